@@ -1,6 +1,41 @@
+import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IntSummaryStatistics;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 // ================ PATTERN STRATEGIA ================
 interface StrategiaPagamento {
@@ -25,6 +60,26 @@ class PagamentoCartaCredito implements StrategiaPagamento {
     public String getMetodoPagamento() {
         return "Carta di Credito";
     }
+    
+    public String getNumeroCarta() {
+        return numeroCarta;
+    }
+    
+    // Le sole ultime quattro cifre: è tutto ciò che esce dalla memoria
+    public String getUltimeCifre() {
+        return ultimeCifre(numeroCarta);
+    }
+    
+    public static String mascheraNumero(String numeroCarta) {
+        return "**** " + ultimeCifre(numeroCarta);
+    }
+    
+    private static String ultimeCifre(String numeroCarta) {
+        if (numeroCarta == null) {
+            return "";
+        }
+        return numeroCarta.substring(Math.max(0, numeroCarta.length() - 4));
+    }
 }
 
 class PagamentoPayPal implements StrategiaPagamento {
@@ -44,6 +99,10 @@ class PagamentoPayPal implements StrategiaPagamento {
     public String getMetodoPagamento() {
         return "PayPal";
     }
+    
+    public String getEmail() {
+        return email;
+    }
 }
 
 interface StrategiaSpedizione {
@@ -86,6 +145,209 @@ class SpedizioneExpress implements StrategiaSpedizione {
     }
 }
 
+// ================ MOTORE SPEDIZIONI ================
+// Tabella tariffe immutabile. Formato di una riga:
+//   nomeCorriere;giorniConsegna;sogliaGratis|-;limite1:costo1,limite2:costo2,...,*:costoN
+// Le fasce sono per importo dell'ordine (limite superiore escluso, in euro).
+class TabellaTariffe {
+    // Oltre questo importo si applica sempre l'ultima fascia
+    private static final int LIMITE_EURO = 2000;
+    
+    private final String[] corrieri;
+    private final int[] giorniConsegna;
+    private final double[] soglieGratis;
+    private final double[][] costiPerEuro;
+    private final Map<String, Integer> indicePerNome;
+    
+    private TabellaTariffe(String[] corrieri, int[] giorniConsegna, double[] soglieGratis, double[][] costiPerEuro) {
+        this.corrieri = corrieri;
+        this.giorniConsegna = giorniConsegna;
+        this.soglieGratis = soglieGratis;
+        this.costiPerEuro = costiPerEuro;
+        this.indicePerNome = new HashMap<>();
+        for (int i = 0; i < corrieri.length; i++) {
+            indicePerNome.put(corrieri[i], i);
+        }
+    }
+    
+    public static TabellaTariffe predefinita() {
+        return daRighe(Arrays.asList(
+            "Spedizione Standard;5;50;*:5.99",
+            "Spedizione Express;2;-;*:12.99"));
+    }
+    
+    public static TabellaTariffe daRighe(List<String> righe) {
+        List<String> valide = new ArrayList<>();
+        for (String riga : righe) {
+            if (!riga.trim().isEmpty() && !riga.trim().startsWith("#")) {
+                valide.add(riga.trim());
+            }
+        }
+        if (valide.isEmpty()) {
+            throw new IllegalArgumentException("Tabella tariffe vuota");
+        }
+        
+        int n = valide.size();
+        String[] corrieri = new String[n];
+        int[] giorni = new int[n];
+        double[] soglie = new double[n];
+        double[][] costi = new double[n][LIMITE_EURO + 1];
+        
+        for (int c = 0; c < n; c++) {
+            String riga = valide.get(c);
+            String[] campi = riga.split(";");
+            if (campi.length != 4) {
+                throw new IllegalArgumentException("Riga tariffe non valida: " + riga);
+            }
+            corrieri[c] = campi[0].trim();
+            try {
+                giorni[c] = Integer.parseInt(campi[1].trim());
+                soglie[c] = campi[2].trim().equals("-") ? Double.POSITIVE_INFINITY : Double.parseDouble(campi[2].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Giorni o soglia non validi: " + riga);
+            }
+            
+            // Espansione delle fasce in un array indicizzato per euro; i limiti
+            // devono crescere, altrimenti una fascia verrebbe ignorata senza errori
+            int euro = 0;
+            int limitePrecedente = 0;
+            for (String fascia : campi[3].split(",")) {
+                String[] parti = fascia.trim().split(":");
+                if (parti.length != 2) {
+                    throw new IllegalArgumentException("Fascia non valida '" + fascia.trim() + "' nella riga: " + riga);
+                }
+                int limite;
+                double costo;
+                try {
+                    limite = parti[0].trim().equals("*") ? Integer.MAX_VALUE : Integer.parseInt(parti[0].trim());
+                    costo = Double.parseDouble(parti[1].trim());
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Fascia non valida '" + fascia.trim() + "' nella riga: " + riga);
+                }
+                if (limite <= limitePrecedente) {
+                    throw new IllegalArgumentException("Limiti delle fasce non crescenti ('" + fascia.trim() + "') nella riga: " + riga);
+                }
+                if (!(costo >= 0)) {
+                    throw new IllegalArgumentException("Costo non valido '" + fascia.trim() + "' nella riga: " + riga);
+                }
+                limitePrecedente = limite;
+                while (euro < limite && euro <= LIMITE_EURO) {
+                    costi[c][euro++] = costo;
+                }
+            }
+            if (limitePrecedente != Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Fasce incomplete per " + corrieri[c] + " (manca la fascia *)");
+            }
+        }
+        return new TabellaTariffe(corrieri, giorni, soglie, costi);
+    }
+    
+    public double calcolaCosto(int corriere, double totaleOrdine) {
+        if (totaleOrdine > soglieGratis[corriere]) {
+            return 0;
+        }
+        int euro = (int) Math.min(Math.max(totaleOrdine, 0), LIMITE_EURO);
+        return costiPerEuro[corriere][euro];
+    }
+    
+    // Preventivo di tutti i corrieri per lo stesso importo
+    public double[] quotaTutti(double totaleOrdine) {
+        double[] costi = new double[corrieri.length];
+        for (int c = 0; c < costi.length; c++) {
+            costi[c] = calcolaCosto(c, totaleOrdine);
+        }
+        return costi;
+    }
+    
+    public int getNumeroCorrieri() { return corrieri.length; }
+    public String getCorriere(int corriere) { return corrieri[corriere]; }
+    public int getGiorniConsegna(int corriere) { return giorniConsegna[corriere]; }
+    
+    public int indiceDi(String nomeCorriere) {
+        Integer indice = indicePerNome.get(nomeCorriere);
+        return indice != null ? indice : -1;
+    }
+}
+
+// Singleton che pubblica la tabella corrente: una ricarica sostituisce
+// il riferimento in un colpo solo, senza riavvio.
+class MotoreSpedizioni {
+    private static final MotoreSpedizioni istanza = new MotoreSpedizioni();
+    private volatile TabellaTariffe tabella;
+    
+    private MotoreSpedizioni() {
+        tabella = TabellaTariffe.predefinita();
+    }
+    
+    public static MotoreSpedizioni getIstanza() {
+        return istanza;
+    }
+    
+    public TabellaTariffe getTabella() {
+        return tabella;
+    }
+    
+    public void ricarica(TabellaTariffe nuovaTabella) {
+        tabella = nuovaTabella;
+    }
+    
+    public void ricarica(Path file) throws IOException {
+        ricarica(TabellaTariffe.daRighe(Files.readAllLines(file, StandardCharsets.UTF_8)));
+    }
+    
+    public double[] quotaTutti(double totaleOrdine) {
+        return tabella.quotaTutti(totaleOrdine);
+    }
+    
+    public StrategiaSpedizione creaStrategia(String nomeCorriere) {
+        TabellaTariffe corrente = tabella;
+        int corriere = corrente.indiceDi(nomeCorriere);
+        if (corriere < 0) {
+            throw new IllegalArgumentException("Corriere sconosciuto: " + nomeCorriere);
+        }
+        return new SpedizioneTariffata(corrente, corriere);
+    }
+}
+
+// Fissa le tariffe della tabella da cui nasce il preventivo: una ricarica
+// cambia solo i preventivi successivi, non gli ordini già accettati.
+class SpedizioneTariffata implements StrategiaSpedizione {
+    private final TabellaTariffe tabella;
+    private final int corriere;
+    private final String nomeCorriere;
+    private final int giorniConsegna;
+    
+    public SpedizioneTariffata(TabellaTariffe tabella, int corriere) {
+        this.tabella = tabella;
+        this.corriere = corriere;
+        this.nomeCorriere = tabella.getCorriere(corriere);
+        this.giorniConsegna = tabella.getGiorniConsegna(corriere);
+    }
+    
+    // Ordine storico di un corriere non più in tabella: il costo è già nel totale
+    public SpedizioneTariffata(String nomeCorriere) {
+        this.tabella = null;
+        this.corriere = -1;
+        this.nomeCorriere = nomeCorriere;
+        this.giorniConsegna = 0;
+    }
+    
+    @Override
+    public double calcolaCostoSpedizione(double totaleOrdine) {
+        return tabella != null ? tabella.calcolaCosto(corriere, totaleOrdine) : 0;
+    }
+    
+    @Override
+    public String getMetodoSpedizione() {
+        return nomeCorriere;
+    }
+    
+    @Override
+    public int getGiorniConsegna() {
+        return giorniConsegna;
+    }
+}
+
 // ================ PATTERN DECORATORE ================
 abstract class ArticoloAbbigliamento {
     protected String id;
@@ -133,6 +395,10 @@ abstract class DecoratoreAbbigliamento extends ArticoloAbbigliamento {
               articoloAbbigliamento.getTipo(), articoloAbbigliamento.getPrezzoBase());
         this.articoloAbbigliamento = articoloAbbigliamento;
     }
+    
+    public ArticoloAbbigliamento getArticoloDecorato() {
+        return articoloAbbigliamento;
+    }
 }
 
 class DecoratoreSconto extends DecoratoreAbbigliamento {
@@ -158,6 +424,296 @@ class DecoratoreSconto extends DecoratoreAbbigliamento {
     }
 }
 
+// ================ MOTORE PROMOZIONI ================
+abstract class Promozione {
+    protected String nome;
+    protected long inizio;
+    protected long fine;
+    
+    public Promozione(String nome, long inizio, long fine) {
+        this.nome = nome;
+        this.inizio = inizio;
+        this.fine = fine;
+    }
+    
+    public boolean isAttiva(long istante) {
+        return istante >= inizio && istante < fine;
+    }
+    
+    public abstract String getDescrizione();
+    
+    public String getNome() { return nome; }
+}
+
+// Sconto percentuale su una tipologia, oppure su tutto il catalogo con tipo "*"
+class PromozioneCategoria extends Promozione {
+    public static final String TUTTO_IL_CATALOGO = "*";
+    private String tipo;
+    private double percentuale;
+    
+    public PromozioneCategoria(String nome, String tipo, double percentuale, long inizio, long fine) {
+        super(nome, inizio, fine);
+        this.tipo = tipo;
+        this.percentuale = Math.max(0, Math.min(100, percentuale));
+    }
+    
+    @Override
+    public String getDescrizione() {
+        return nome + ": " + percentuale + "% su " + (tipo.equals(TUTTO_IL_CATALOGO) ? "tutto il catalogo" : tipo);
+    }
+    
+    public String getTipo() { return tipo; }
+    public double getPercentuale() { return percentuale; }
+}
+
+// Ogni quantitaAcquistata + quantitaOmaggio articoli del tipo, i quantitaOmaggio meno cari sono gratis
+class PromozioneCompraPrendi extends Promozione {
+    private String tipo;
+    private int quantitaAcquistata;
+    private int quantitaOmaggio;
+    
+    public PromozioneCompraPrendi(String nome, String tipo, int quantitaAcquistata, int quantitaOmaggio, long inizio, long fine) {
+        super(nome, inizio, fine);
+        this.tipo = tipo;
+        this.quantitaAcquistata = Math.max(1, quantitaAcquistata);
+        this.quantitaOmaggio = Math.max(1, quantitaOmaggio);
+    }
+    
+    @Override
+    public String getDescrizione() {
+        return nome + ": compra " + quantitaAcquistata + " prendi " + (quantitaAcquistata + quantitaOmaggio) + " su " + tipo;
+    }
+    
+    public String getTipo() { return tipo; }
+    public int getQuantitaAcquistata() { return quantitaAcquistata; }
+    public int getQuantitaOmaggio() { return quantitaOmaggio; }
+}
+
+// Sconto a scaglioni sul totale del carrello; gli scaglioni vengono ordinati per soglia
+class PromozioneSoglia extends Promozione {
+    private double[] soglie;
+    private double[] percentuali;
+    
+    public PromozioneSoglia(String nome, double[] soglie, double[] percentuali, long inizio, long fine) {
+        super(nome, inizio, fine);
+        if (soglie.length != percentuali.length) {
+            throw new IllegalArgumentException("Soglie e percentuali di numero diverso");
+        }
+        Integer[] ordine = new Integer[soglie.length];
+        for (int i = 0; i < soglie.length; i++) {
+            if (!(soglie[i] >= 0) || Double.isNaN(percentuali[i])) {
+                throw new IllegalArgumentException("Scaglione non valido: " + soglie[i] + ":" + percentuali[i]);
+            }
+            ordine[i] = i;
+        }
+        Arrays.sort(ordine, (x, y) -> Double.compare(soglie[x], soglie[y]));
+        
+        this.soglie = new double[soglie.length];
+        this.percentuali = new double[soglie.length];
+        for (int i = 0; i < ordine.length; i++) {
+            this.soglie[i] = soglie[ordine[i]];
+            this.percentuali[i] = Math.max(0, Math.min(100, percentuali[ordine[i]]));
+        }
+    }
+    
+    public double percentualePer(double totale) {
+        int indice = Arrays.binarySearch(soglie, totale);
+        if (indice < 0) {
+            indice = -indice - 2;
+        }
+        // A parità di soglia vale l'ultimo scaglione inserito
+        while (indice >= 0 && indice + 1 < soglie.length && soglie[indice + 1] == soglie[indice]) {
+            indice++;
+        }
+        return indice >= 0 ? percentuali[indice] : 0;
+    }
+    
+    @Override
+    public String getDescrizione() {
+        StringBuilder descrizione = new StringBuilder(nome + ":");
+        for (int i = 0; i < soglie.length; i++) {
+            descrizione.append(" da €").append(soglie[i]).append(" -").append(percentuali[i]).append("%");
+        }
+        return descrizione.toString();
+    }
+}
+
+class PrezzoCarrello {
+    private double subtotale;
+    private double sconto;
+    
+    public PrezzoCarrello(double subtotale, double sconto) {
+        this.subtotale = subtotale;
+        this.sconto = sconto;
+    }
+    
+    public double getSubtotale() { return subtotale; }
+    public double getSconto() { return sconto; }
+    public double getTotale() { return subtotale - sconto; }
+}
+
+// Forma compilata delle promozioni: indicizzate per tipo, così il calcolo
+// di un carrello considera solo le regole dei tipi presenti.
+class IndicePromozioni {
+    private static final PromozioneCategoria[] NESSUNA_CATEGORIA = new PromozioneCategoria[0];
+    
+    private final PromozioneCategoria[] globali;
+    private final Map<String, PromozioneCategoria[]> categoriePerTipo;
+    private final Map<String, PromozioneCompraPrendi[]> compraPrendiPerTipo;
+    private final PromozioneSoglia[] soglie;
+    
+    public IndicePromozioni(List<Promozione> promozioni) {
+        List<PromozioneCategoria> globali = new ArrayList<>();
+        Map<String, List<PromozioneCategoria>> categorie = new HashMap<>();
+        Map<String, List<PromozioneCompraPrendi>> compraPrendi = new HashMap<>();
+        List<PromozioneSoglia> soglie = new ArrayList<>();
+        
+        for (Promozione promozione : promozioni) {
+            if (promozione instanceof PromozioneCategoria) {
+                PromozioneCategoria categoria = (PromozioneCategoria) promozione;
+                if (categoria.getTipo().equals(PromozioneCategoria.TUTTO_IL_CATALOGO)) {
+                    globali.add(categoria);
+                } else {
+                    categorie.computeIfAbsent(categoria.getTipo(), k -> new ArrayList<>()).add(categoria);
+                }
+            } else if (promozione instanceof PromozioneCompraPrendi) {
+                PromozioneCompraPrendi regola = (PromozioneCompraPrendi) promozione;
+                compraPrendi.computeIfAbsent(regola.getTipo(), k -> new ArrayList<>()).add(regola);
+            } else if (promozione instanceof PromozioneSoglia) {
+                soglie.add((PromozioneSoglia) promozione);
+            }
+        }
+        
+        this.globali = globali.toArray(new PromozioneCategoria[0]);
+        this.categoriePerTipo = new HashMap<>();
+        for (Map.Entry<String, List<PromozioneCategoria>> voce : categorie.entrySet()) {
+            categoriePerTipo.put(voce.getKey(), voce.getValue().toArray(new PromozioneCategoria[0]));
+        }
+        this.compraPrendiPerTipo = new HashMap<>();
+        for (Map.Entry<String, List<PromozioneCompraPrendi>> voce : compraPrendi.entrySet()) {
+            compraPrendiPerTipo.put(voce.getKey(), voce.getValue().toArray(new PromozioneCompraPrendi[0]));
+        }
+        this.soglie = soglie.toArray(new PromozioneSoglia[0]);
+    }
+    
+    // Miglior sconto percentuale di categoria per un tipo (le regole non si sommano)
+    public double percentualeCategoria(String tipo, long istante) {
+        double migliore = 0;
+        for (PromozioneCategoria regola : globali) {
+            if (regola.isAttiva(istante)) {
+                migliore = Math.max(migliore, regola.getPercentuale());
+            }
+        }
+        for (PromozioneCategoria regola : categoriePerTipo.getOrDefault(tipo, NESSUNA_CATEGORIA)) {
+            if (regola.isAttiva(istante)) {
+                migliore = Math.max(migliore, regola.getPercentuale());
+            }
+        }
+        return migliore;
+    }
+    
+    public PrezzoCarrello calcola(List<ArticoloAbbigliamento> articoli, long istante) {
+        double subtotale = 0;
+        double scontoCategorie = 0;
+        Map<String, List<Double>> prezziCompraPrendi = null;
+        
+        for (ArticoloAbbigliamento articolo : articoli) {
+            double prezzo = articolo.getPrezzo();
+            subtotale += prezzo;
+            double scontato = prezzo * (1 - percentualeCategoria(articolo.getTipo(), istante) / 100);
+            scontoCategorie += prezzo - scontato;
+            
+            if (compraPrendiPerTipo.containsKey(articolo.getTipo())) {
+                if (prezziCompraPrendi == null) {
+                    prezziCompraPrendi = new HashMap<>();
+                }
+                prezziCompraPrendi.computeIfAbsent(articolo.getTipo(), k -> new ArrayList<>()).add(scontato);
+            }
+        }
+        
+        double scontoOmaggi = 0;
+        if (prezziCompraPrendi != null) {
+            for (Map.Entry<String, List<Double>> voce : prezziCompraPrendi.entrySet()) {
+                scontoOmaggi += migliorOmaggio(compraPrendiPerTipo.get(voce.getKey()), voce.getValue(), istante);
+            }
+        }
+        
+        double totaleParziale = subtotale - scontoCategorie - scontoOmaggi;
+        double percentualeSoglia = 0;
+        for (PromozioneSoglia regola : soglie) {
+            if (regola.isAttiva(istante)) {
+                percentualeSoglia = Math.max(percentualeSoglia, regola.percentualePer(totaleParziale));
+            }
+        }
+        double scontoSoglia = totaleParziale * percentualeSoglia / 100;
+        
+        return new PrezzoCarrello(subtotale, scontoCategorie + scontoOmaggi + scontoSoglia);
+    }
+    
+    private double migliorOmaggio(PromozioneCompraPrendi[] regole, List<Double> prezzi, long istante) {
+        double[] ordinati = new double[prezzi.size()];
+        for (int i = 0; i < ordinati.length; i++) {
+            ordinati[i] = prezzi.get(i);
+        }
+        Arrays.sort(ordinati);
+        
+        double migliore = 0;
+        for (PromozioneCompraPrendi regola : regole) {
+            if (regola.isAttiva(istante)) {
+                int gruppo = regola.getQuantitaAcquistata() + regola.getQuantitaOmaggio();
+                int omaggi = (ordinati.length / gruppo) * regola.getQuantitaOmaggio();
+                double sconto = 0;
+                for (int i = 0; i < omaggi; i++) {
+                    sconto += ordinati[i];
+                }
+                migliore = Math.max(migliore, sconto);
+            }
+        }
+        return migliore;
+    }
+}
+
+// Singleton: le modifiche ricompilano l'indice una volta sola per lotto e lo pubblicano
+class MotorePromozioni {
+    private static final MotorePromozioni istanza = new MotorePromozioni();
+    private final List<Promozione> promozioni;
+    private volatile IndicePromozioni indice;
+    
+    private MotorePromozioni() {
+        promozioni = new ArrayList<>();
+        indice = new IndicePromozioni(promozioni);
+    }
+    
+    public static MotorePromozioni getIstanza() {
+        return istanza;
+    }
+    
+    public void aggiungiPromozione(Promozione promozione) {
+        aggiungiPromozioni(Arrays.asList(promozione));
+    }
+    
+    public synchronized void aggiungiPromozioni(List<? extends Promozione> lotto) {
+        promozioni.addAll(lotto);
+        indice = new IndicePromozioni(promozioni);
+    }
+    
+    public synchronized boolean rimuoviPromozione(String nome) {
+        boolean rimossa = promozioni.removeIf(promozione -> promozione.getNome().equals(nome));
+        if (rimossa) {
+            indice = new IndicePromozioni(promozioni);
+        }
+        return rimossa;
+    }
+    
+    public synchronized List<Promozione> getPromozioni() {
+        return new ArrayList<>(promozioni);
+    }
+    
+    public PrezzoCarrello calcolaPrezzo(List<ArticoloAbbigliamento> articoli) {
+        return indice.calcola(articoli, System.currentTimeMillis());
+    }
+}
+
 // ================ PATTERN FACTORY METHOD ================
 abstract class Utente {
     protected String id;
@@ -200,6 +756,12 @@ class UtenteAmministratore extends Utente {
         System.out.println("4. Visualizza ordini in attesa");
         System.out.println("5. Spedisci ordine");
         System.out.println("6. Visualizza inventario");
+        System.out.println("7. Ricarica tariffe spedizione");
+        System.out.println("8. Aggiungi promozione");
+        System.out.println("9. Visualizza promozioni");
+        System.out.println("10. Salva immagine database");
+        System.out.println("11. Ricostruisci raccomandazioni");
+        System.out.println("12. Report vendite");
         System.out.println("0. Esci");
     }
 }
@@ -277,6 +839,10 @@ class ServizioNotifiche implements Osservatore {
     public void aggiorna(String messaggio) {
         System.out.println("📧 Notifica per " + emailUtente + ": " + messaggio);
     }
+    
+    public String getEmailUtente() {
+        return emailUtente;
+    }
 }
 
 class Ordine implements Soggetto {
@@ -284,6 +850,8 @@ class Ordine implements Soggetto {
     private String idCliente;
     private List<ArticoloAbbigliamento> articoli;
     private double totale;
+    private double scontoApplicato;
+    private long dataOrdine;
     private StatoOrdine stato;
     private StrategiaPagamento strategiaPagamento;
     private StrategiaSpedizione strategiaSpedizione;
@@ -329,12 +897,20 @@ class Ordine implements Soggetto {
     public String getIdCliente() { return idCliente; }
     public List<ArticoloAbbigliamento> getArticoli() { return articoli; }
     public double getTotale() { return totale; }
+    public double getScontoApplicato() { return scontoApplicato; }
+    public long getDataOrdine() { return dataOrdine; }
     public StatoOrdine getStato() { return stato; }
     public StrategiaPagamento getStrategiaPagamento() { return strategiaPagamento; }
     public StrategiaSpedizione getStrategiaSpedizione() { return strategiaSpedizione; }
+    public List<Osservatore> getOsservatori() { return new ArrayList<>(osservatori); }
     
+    public void setIdOrdine(String idOrdine) { this.idOrdine = idOrdine; }
     public void setArticoli(List<ArticoloAbbigliamento> articoli) { this.articoli = new ArrayList<>(articoli); }
     public void setTotale(double totale) { this.totale = totale; }
+    public void setScontoApplicato(double scontoApplicato) { this.scontoApplicato = scontoApplicato; }
+    public void setDataOrdine(long dataOrdine) { this.dataOrdine = dataOrdine; }
+    // Ripristino dello stato senza notifiche (es. decodifica da archivio)
+    public void setStato(StatoOrdine stato) { this.stato = stato; }
     public void setStrategiaPagamento(StrategiaPagamento strategiaPagamento) { this.strategiaPagamento = strategiaPagamento; }
     public void setStrategiaSpedizione(StrategiaSpedizione strategiaSpedizione) { this.strategiaSpedizione = strategiaSpedizione; }
 }
@@ -343,18 +919,29 @@ class Ordine implements Soggetto {
 class DatabaseEcommerce {
     private static DatabaseEcommerce istanza;
     private List<Utente> utenti;
-    private List<ArticoloAbbigliamento> inventario;
-    private List<Ordine> ordini;
+    private Map<String, Utente> utentiPerId;
+    // Email e nickname non sono univoci: ogni login porta a tutti i suoi utenti
+    private Map<String, List<Utente>> utentiPerLogin;
+    private volatile SnapshotCatalogo catalogo;
+    private RegistroOrdini ordini;
+    private Map<String, Ordine> ordiniPerId;
+    private PipelineOrdini pipelineOrdini;
     private int prossimoIdUtente;
     private int prossimoIdOrdine;
+    private volatile boolean pronto;
+    private final Map<String, Long> tempiAvvio = new LinkedHashMap<>();
     
     private DatabaseEcommerce() {
         utenti = new ArrayList<>();
-        inventario = new ArrayList<>();
-        ordini = new ArrayList<>();
+        utentiPerId = new HashMap<>();
+        utentiPerLogin = new HashMap<>();
+        catalogo = new SnapshotCatalogo(0, new LinkedHashMap<>());
+        ordini = new RegistroOrdini();
+        ordiniPerId = new ConcurrentHashMap<>();
         prossimoIdUtente = 1;
         prossimoIdOrdine = 1;
         inizializzaAmministratore();
+        pronto = true;
     }
     
     public static DatabaseEcommerce getIstanza() {
@@ -364,10 +951,143 @@ class DatabaseEcommerce {
         return istanza;
     }
     
+    // La pipeline è l'unico scrittore del registro ordini
+    public synchronized PipelineOrdini getPipelineOrdini() {
+        if (pipelineOrdini == null) {
+            pipelineOrdini = new PipelineOrdini(this);
+            pipelineOrdini.avvia();
+        }
+        return pipelineOrdini;
+    }
+    
     private void inizializzaAmministratore() {
         FabbricaAmministratori fabbricaAdmin = new FabbricaAmministratori();
         Utente admin = fabbricaAdmin.creaUtente("admin", "admin@negozio.com", "admin", "admin123");
-        utenti.add(admin);
+        aggiungiUtente(admin);
+    }
+    
+    // ---- Avvio rapido da immagine ----
+    
+    // Da chiamare su un nodo appena avviato, prima del primo checkout
+    public synchronized void caricaImmagine(Path file) throws IOException {
+        if (pipelineOrdini != null || ordini.dimensione() > 0) {
+            throw new IllegalStateException("Il database contiene già ordini");
+        }
+        pronto = false;
+        tempiAvvio.clear();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        
+        long inizio = System.nanoTime();
+        ImmagineDatabase immagine = ImmagineDatabase.carica(file, pool);
+        registraFase("lettura e decodifica", inizio);
+        
+        inizio = System.nanoTime();
+        costruisciIndici(immagine, pool);
+        registraFase("indici", inizio);
+        
+        inizio = System.nanoTime();
+        IndiceCoAcquisti.getIstanza().ricostruisci(immagine.getOrdini(), pool);
+        registraFase("co-acquisti", inizio);
+        
+        inizio = System.nanoTime();
+        ProiezioneOrdini.getIstanza().aggiorna();
+        registraFase("proiezione report", inizio);
+        
+        inizio = System.nanoTime();
+        preriscalda();
+        registraFase("preriscaldamento", inizio);
+        
+        pronto = true;
+    }
+    
+    public void salvaImmagine(Path file) throws IOException {
+        ImmagineDatabase.salva(file, new ArrayList<>(utenti), catalogo.getArticoli(), ordini.copia(),
+                               prossimoIdUtente, prossimoIdOrdine);
+    }
+    
+    private void costruisciIndici(ImmagineDatabase immagine, ForkJoinPool pool) {
+        List<Utente> nuoviUtenti = immagine.getUtenti();
+        List<Ordine> nuoviOrdini = immagine.getOrdini();
+        Map<String, Utente> nuoviPerId = new HashMap<>(nuoviUtenti.size() * 2);
+        Map<String, List<Utente>> nuoviPerLogin = new HashMap<>(nuoviUtenti.size() * 4);
+        Map<String, Ordine> nuoviOrdiniPerId = new ConcurrentHashMap<>(nuoviOrdini.size() * 2);
+        LinkedHashMap<String, ArticoloAbbigliamento> articoli = new LinkedHashMap<>(immagine.getArticoli().size() * 2);
+        
+        List<Callable<Void>> compiti = new ArrayList<>();
+        compiti.add(() -> {
+            // Indice per ID e ricostruzione dello storico ordini dei clienti
+            for (Utente utente : nuoviUtenti) {
+                nuoviPerId.put(utente.getId(), utente);
+            }
+            for (Ordine ordine : nuoviOrdini) {
+                Utente cliente = nuoviPerId.get(ordine.getIdCliente());
+                if (cliente instanceof UtenteCliente) {
+                    ((UtenteCliente) cliente).aggiungiOrdine(ordine);
+                }
+            }
+            return null;
+        });
+        compiti.add(() -> {
+            for (Utente utente : nuoviUtenti) {
+                indicizzaLogin(nuoviPerLogin, utente);
+            }
+            return null;
+        });
+        compiti.add(() -> {
+            for (ArticoloAbbigliamento articolo : immagine.getArticoli()) {
+                articoli.remove(articolo.getId());
+                articoli.put(articolo.getId(), articolo);
+            }
+            return null;
+        });
+        compiti.add(() -> {
+            nuoviOrdini.parallelStream().forEach(ordine -> nuoviOrdiniPerId.put(ordine.getIdOrdine(), ordine));
+            return null;
+        });
+        compiti.add(() -> {
+            ordini.aggiungiTutti(nuoviOrdini);
+            return null;
+        });
+        ImmagineDatabase.attendiTutti(pool.invokeAll(compiti));
+        
+        utenti = new ArrayList<>(nuoviUtenti);
+        utentiPerId = nuoviPerId;
+        utentiPerLogin = nuoviPerLogin;
+        ordiniPerId = nuoviOrdiniPerId;
+        prossimoIdUtente = immagine.getProssimoIdUtente();
+        prossimoIdOrdine = immagine.getProssimoIdOrdine();
+        catalogo = new SnapshotCatalogo(catalogo.getVersione() + 1, articoli);
+    }
+    
+    // Porta in memoria le strutture più usate e scalda i percorsi del checkout
+    private void preriscalda() {
+        double somma = 0;
+        for (ArticoloAbbigliamento articolo : catalogo.getArticoli()) {
+            somma += articolo.getPrezzo();
+        }
+        List<ArticoloAbbigliamento> campione = catalogo.getArticoli().subList(0, Math.min(10, catalogo.getArticoli().size()));
+        for (int i = 0; i < 10_000; i++) {
+            somma += MotorePromozioni.getIstanza().calcolaPrezzo(campione).getTotale();
+            somma += MotoreSpedizioni.getIstanza().quotaTutti(i % 200)[0];
+            autenticaUtente("preriscaldamento" + (i % 100), "");
+        }
+        if (Double.isNaN(somma)) {
+            System.out.println("Preriscaldamento: valori non validi nel catalogo");
+        }
+        getPipelineOrdini();
+    }
+    
+    private void registraFase(String fase, long inizioNanos) {
+        tempiAvvio.put(fase, (System.nanoTime() - inizioNanos) / 1_000_000);
+    }
+    
+    public boolean isPronto() {
+        return pronto;
+    }
+    
+    // Durata in millisecondi di ogni fase dell'ultimo avvio da immagine
+    public synchronized Map<String, Long> getTempiAvvio() {
+        return new LinkedHashMap<>(tempiAvvio);
     }
     
     public String generaIdUtente() {
@@ -380,95 +1100,1764 @@ class DatabaseEcommerce {
     
     public void aggiungiUtente(Utente utente) {
         utenti.add(utente);
+        utentiPerId.put(utente.getId(), utente);
+        indicizzaLogin(utentiPerLogin, utente);
     }
     
-    public Utente getUtente(String id) {
-        for (Utente utente : utenti) {
-            if (utente.getId().equals(id)) {
-                return utente;
+    private static void indicizzaLogin(Map<String, List<Utente>> indice, Utente utente) {
+        for (String login : new String[] { utente.getEmail(), utente.getNickname() }) {
+            List<Utente> candidati = indice.computeIfAbsent(login, chiave -> new ArrayList<>(1));
+            // Email e nickname uguali: l'utente compare una volta sola
+            if (candidati.isEmpty() || candidati.get(candidati.size() - 1) != utente) {
+                candidati.add(utente);
             }
         }
-        return null;
     }
     
+    public Utente getUtente(String id) {
+        return utentiPerId.get(id);
+    }
+    
+    // Come nella ricerca lineare originale vince il primo utente registrato con login e password corrispondenti
     public Utente autenticaUtente(String loginId, String password) {
-        for (Utente utente : utenti) {
-            if ((utente.getEmail().equals(loginId) || utente.getNickname().equals(loginId)) 
-                && utente.getPassword().equals(password)) {
-                return utente;
+        List<Utente> candidati = utentiPerLogin.get(loginId);
+        if (candidati != null) {
+            for (Utente utente : candidati) {
+                if (utente.getPassword().equals(password)) {
+                    return utente;
+                }
             }
         }
         return null;
     }
     
     public void aggiungiArticoloAbbigliamento(ArticoloAbbigliamento articolo) {
-        // Rimuovi articolo esistente con stesso ID se presente
-        for (int i = 0; i < inventario.size(); i++) {
-            if (inventario.get(i).getId().equals(articolo.getId())) {
-                inventario.remove(i);
-                break;
-            }
-        }
-        inventario.add(articolo);
+        modificaCatalogo(modifica -> modifica.aggiungi(articolo));
     }
     
     public ArticoloAbbigliamento getArticoloAbbigliamento(String id) {
-        for (ArticoloAbbigliamento articolo : inventario) {
-            if (articolo.getId().equals(id)) {
-                return articolo;
-            }
-        }
-        return null;
+        return catalogo.getArticolo(id);
     }
     
     public void rimuoviArticoloAbbigliamento(String id) {
-        for (int i = 0; i < inventario.size(); i++) {
-            if (inventario.get(i).getId().equals(id)) {
-                inventario.remove(i);
-                break;
-            }
-        }
+        modificaCatalogo(modifica -> modifica.rimuovi(id));
+    }
+    
+    // Applica un lotto di modifiche e pubblica una sola nuova versione del catalogo
+    public synchronized void modificaCatalogo(Consumer<ModificaCatalogo> modifiche) {
+        SnapshotCatalogo corrente = catalogo;
+        ModificaCatalogo modifica = new ModificaCatalogo(corrente);
+        modifiche.accept(modifica);
+        catalogo = modifica.costruisci(corrente.getVersione() + 1);
+    }
+    
+    public SnapshotCatalogo getCatalogo() {
+        return catalogo;
     }
     
     public List<ArticoloAbbigliamento> getInventario() {
-        return new ArrayList<>(inventario);
+        return catalogo.getArticoli();
+    }
+    
+    public void aggiungiOrdini(List<Ordine> lotto) {
+        for (Ordine ordine : lotto) {
+            ordiniPerId.put(ordine.getIdOrdine(), ordine);
+        }
+        ordini.aggiungiTutti(lotto);
     }
     
-    public void aggiungiOrdine(Ordine ordine) {
-        ordini.add(ordine);
+    public int getNumeroOrdini() {
+        return ordini.dimensione();
     }
     
     public Ordine getOrdine(String idOrdine) {
-        for (Ordine ordine : ordini) {
-            if (ordine.getIdOrdine().equals(idOrdine)) {
-                return ordine;
-            }
-        }
-        return null;
+        return ordiniPerId.get(idOrdine);
     }
     
     public List<Ordine> getOrdini() {
-        return new ArrayList<>(ordini);
+        return ordini.copia();
+    }
+    
+    // Ordini persistiti a partire dalla posizione indicata, in ordine di inserimento
+    public List<Ordine> getOrdiniDa(int posizione) {
+        return ordini.copia(posizione);
     }
     
     public List<Ordine> getOrdiniPerCliente(String idCliente) {
-        List<Ordine> ordiniCliente = new ArrayList<>();
-        for (Ordine ordine : ordini) {
-            if (ordine.getIdCliente().equals(idCliente)) {
-                ordiniCliente.add(ordine);
-            }
-        }
-        return ordiniCliente;
+        return ordini.filtra(ordine -> ordine.getIdCliente().equals(idCliente), Integer.MAX_VALUE);
     }
     
     public List<Ordine> getOrdiniInAttesa() {
-        List<Ordine> ordiniInAttesa = new ArrayList<>();
-        for (Ordine ordine : ordini) {
-            if (ordine.getStato() == Ordine.StatoOrdine.PAGATO) {
-                ordiniInAttesa.add(ordine);
-            }
+        return getOrdiniInAttesa(Integer.MAX_VALUE);
+    }
+    
+    public List<Ordine> getOrdiniInAttesa(int massimo) {
+        return ordini.filtra(ordine -> ordine.getStato() == Ordine.StatoOrdine.PAGATO, massimo);
+    }
+}
+
+// ================ CATALOGO COPY-ON-WRITE ================
+// Versione immutabile del catalogo: i lettori leggono il riferimento
+// corrente senza lock né copie, gli scrittori ne pubblicano una nuova.
+class SnapshotCatalogo {
+    private final long versione;
+    private final List<ArticoloAbbigliamento> articoli;
+    private final Map<String, ArticoloAbbigliamento> articoliPerId;
+    
+    // Copia la mappa ricevuta: chi la possiede non può modificare una versione pubblicata
+    public SnapshotCatalogo(long versione, LinkedHashMap<String, ArticoloAbbigliamento> articoliPerId) {
+        this.versione = versione;
+        this.articoliPerId = Collections.unmodifiableMap(new HashMap<>(articoliPerId));
+        this.articoli = Collections.unmodifiableList(new ArrayList<>(articoliPerId.values()));
+    }
+    
+    public long getVersione() { return versione; }
+    public List<ArticoloAbbigliamento> getArticoli() { return articoli; }
+    public ArticoloAbbigliamento getArticolo(String id) { return articoliPerId.get(id); }
+    
+    LinkedHashMap<String, ArticoloAbbigliamento> copiaArticoli() {
+        LinkedHashMap<String, ArticoloAbbigliamento> copia = new LinkedHashMap<>(articoli.size() * 2);
+        for (ArticoloAbbigliamento articolo : articoli) {
+            copia.put(articolo.getId(), articolo);
+        }
+        return copia;
+    }
+}
+
+// Lotto di modifiche costruito su una copia privata dello snapshot corrente
+class ModificaCatalogo {
+    private final LinkedHashMap<String, ArticoloAbbigliamento> articoli;
+    
+    ModificaCatalogo(SnapshotCatalogo base) {
+        this.articoli = base.copiaArticoli();
+    }
+    
+    // Un articolo con lo stesso ID viene sostituito e spostato in fondo
+    public ModificaCatalogo aggiungi(ArticoloAbbigliamento articolo) {
+        articoli.remove(articolo.getId());
+        articoli.put(articolo.getId(), articolo);
+        return this;
+    }
+    
+    public ModificaCatalogo rimuovi(String id) {
+        articoli.remove(id);
+        return this;
+    }
+    
+    public ArticoloAbbigliamento getArticolo(String id) {
+        return articoli.get(id);
+    }
+    
+    SnapshotCatalogo costruisci(long versione) {
+        return new SnapshotCatalogo(versione, articoli);
+    }
+}
+
+// ================ CODEC BINARIO ================
+// Formato binario versionato per Ordine e Utente.
+// Intestazione: magic 'E''C' + versione + posizione del dizionario. Ogni record
+// è preceduto dalla sua lunghezza: i campi nuovi si aggiungono in coda e chi
+// non li conosce li salta. Tipologie e nomi dei metodi sono internati: i record
+// contengono solo l'indice, le stringhe stanno nel dizionario in fondo al
+// flusso, fuori dai record, così saltare un campo non perde definizioni.
+class ScrittoreBinario {
+    private static final int POSIZIONE_DIZIONARIO = 3;
+    
+    private ByteBuffer buffer;
+    private final Map<String, Integer> tabellaStringhe = new HashMap<>();
+    private final List<String> dizionario = new ArrayList<>();
+    private boolean terminato;
+    
+    public ScrittoreBinario(int capacitaIniziale) {
+        buffer = ByteBuffer.allocate(Math.max(capacitaIniziale, 16));
+        buffer.put(CodecBinario.MAGIC_1).put(CodecBinario.MAGIC_2).put(CodecBinario.VERSIONE);
+        buffer.putInt(0);
+    }
+    
+    private void garantisci(int byteNecessari) {
+        if (terminato) {
+            throw new IllegalStateException("Flusso già terminato");
+        }
+        if (buffer.remaining() < byteNecessari) {
+            ByteBuffer piuGrande = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + byteNecessari));
+            buffer.flip();
+            piuGrande.put(buffer);
+            buffer = piuGrande;
+        }
+    }
+    
+    public void scriviByte(int valore) {
+        garantisci(1);
+        buffer.put((byte) valore);
+    }
+    
+    public void scriviVarint(int valore) {
+        garantisci(5);
+        while ((valore & ~0x7F) != 0) {
+            buffer.put((byte) ((valore & 0x7F) | 0x80));
+            valore >>>= 7;
+        }
+        buffer.put((byte) valore);
+    }
+    
+    public void scriviLong(long valore) {
+        garantisci(8);
+        buffer.putLong(valore);
+    }
+    
+    public void scriviDouble(double valore) {
+        garantisci(8);
+        buffer.putDouble(valore);
+    }
+    
+    // 0 = null, altrimenti lunghezza + 1 seguita dai byte UTF-8
+    public void scriviStringa(String valore) {
+        if (valore == null) {
+            scriviVarint(0);
+            return;
+        }
+        byte[] utf8 = valore.getBytes(StandardCharsets.UTF_8);
+        scriviVarint(utf8.length + 1);
+        garantisci(utf8.length);
+        buffer.put(utf8);
+    }
+    
+    // 0 = null, n >= 1 = indice n - 1 nel dizionario
+    public void scriviStringaInternata(String valore) {
+        if (valore == null) {
+            scriviVarint(0);
+            return;
+        }
+        Integer indice = tabellaStringhe.get(valore);
+        if (indice == null) {
+            indice = dizionario.size();
+            tabellaStringhe.put(valore, indice);
+            dizionario.add(valore);
+        }
+        scriviVarint(indice + 1);
+    }
+    
+    public int iniziaRecord() {
+        garantisci(4);
+        int posizione = buffer.position();
+        buffer.putInt(0);
+        return posizione;
+    }
+    
+    public void chiudiRecord(int posizione) {
+        buffer.putInt(posizione, buffer.position() - posizione - 4);
+    }
+    
+    // Accoda il dizionario e ne registra la posizione: dopo non si scrive più
+    public ByteBuffer getBuffer() {
+        if (!terminato) {
+            buffer.putInt(POSIZIONE_DIZIONARIO, buffer.position());
+            scriviVarint(dizionario.size());
+            for (String valore : dizionario) {
+                scriviStringa(valore);
+            }
+            terminato = true;
+        }
+        ByteBuffer risultato = buffer.duplicate();
+        risultato.flip();
+        return risultato;
+    }
+}
+
+// Decodifica direttamente dal ByteBuffer (anche diretto o mappato), senza
+// copiarlo; solo i byte di ogni stringa nuova vengono materializzati.
+class LettoreBinario {
+    private final ByteBuffer buffer;
+    private final List<String> tabellaStringhe = new ArrayList<>();
+    private final int versione;
+    private final int fineDati;
+    
+    public LettoreBinario(ByteBuffer buffer) {
+        this.buffer = buffer;
+        int inizio = buffer.position();
+        if (buffer.remaining() < 3 || buffer.get() != CodecBinario.MAGIC_1 || buffer.get() != CodecBinario.MAGIC_2) {
+            throw new IllegalArgumentException("Formato binario non riconosciuto");
+        }
+        this.versione = buffer.get();
+        if (versione >= CodecBinario.VERSIONE_DIZIONARIO) {
+            // Il dizionario si legge subito: i record lo usano solo per indice
+            fineDati = inizio + buffer.getInt();
+            int posizioneRecord = buffer.position();
+            buffer.position(fineDati);
+            int numeroStringhe = leggiVarint();
+            for (int i = 0; i < numeroStringhe; i++) {
+                tabellaStringhe.add(leggiStringa());
+            }
+            buffer.position(posizioneRecord);
+        } else {
+            fineDati = buffer.limit();
+        }
+    }
+    
+    public int getVersione() { return versione; }
+    public boolean haAltriDati() { return buffer.position() < fineDati; }
+    
+    public int leggiByte() {
+        return buffer.get();
+    }
+    
+    public int leggiVarint() {
+        int valore = 0;
+        int spostamento = 0;
+        byte corrente;
+        do {
+            corrente = buffer.get();
+            valore |= (corrente & 0x7F) << spostamento;
+            spostamento += 7;
+        } while ((corrente & 0x80) != 0);
+        return valore;
+    }
+    
+    public long leggiLong() {
+        return buffer.getLong();
+    }
+    
+    public double leggiDouble() {
+        return buffer.getDouble();
+    }
+    
+    public String leggiStringa() {
+        int lunghezza = leggiVarint() - 1;
+        if (lunghezza < 0) {
+            return null;
+        }
+        String valore;
+        if (buffer.hasArray()) {
+            valore = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), lunghezza, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + lunghezza);
+        } else {
+            byte[] utf8 = new byte[lunghezza];
+            buffer.get(utf8);
+            valore = new String(utf8, StandardCharsets.UTF_8);
+        }
+        return valore;
+    }
+    
+    public String leggiStringaInternata() {
+        int codice = leggiVarint();
+        if (codice == 0) {
+            return null;
+        }
+        if (versione >= CodecBinario.VERSIONE_DIZIONARIO) {
+            return tabellaStringhe.get(codice - 1);
+        }
+        // Versioni precedenti: stringhe definite in linea alla prima occorrenza
+        if (codice == 1) {
+            String valore = leggiStringa();
+            tabellaStringhe.add(valore);
+            return valore;
+        }
+        return tabellaStringhe.get(codice - 2);
+    }
+    
+    // Restituisce la posizione di fine del record
+    public int apriRecord() {
+        int lunghezza = buffer.getInt();
+        return buffer.position() + lunghezza;
+    }
+    
+    public boolean haAltriCampi(int fineRecord) {
+        return buffer.position() < fineRecord;
+    }
+    
+    // Salta eventuali campi aggiunti da versioni successive
+    public void chiudiRecord(int fineRecord) {
+        buffer.position(fineRecord);
+    }
+}
+
+class CodecBinario {
+    static final byte MAGIC_1 = 'E';
+    static final byte MAGIC_2 = 'C';
+    // Versione 2: data ordine e sconto promozioni in coda al record ordine
+    // Versione 3: stringhe internate nel dizionario in fondo al flusso
+    static final byte VERSIONE = 3;
+    static final byte VERSIONE_DIZIONARIO = 3;
+    
+    private static final Ordine.StatoOrdine[] STATI = Ordine.StatoOrdine.values();
+    
+    public static void codificaArticolo(ScrittoreBinario scrittore, ArticoloAbbigliamento articolo) {
+        // Gli sconti sono scritti dal più interno al più esterno
+        List<Double> sconti = new ArrayList<>();
+        ArticoloAbbigliamento base = articolo;
+        while (base instanceof DecoratoreAbbigliamento) {
+            if (!(base instanceof DecoratoreSconto)) {
+                throw new IllegalArgumentException("Decoratore non supportato: " + base.getClass().getSimpleName());
+            }
+            sconti.add(0, ((DecoratoreSconto) base).getPercentualeSconto());
+            base = ((DecoratoreAbbigliamento) base).getArticoloDecorato();
+        }
+        
+        int record = scrittore.iniziaRecord();
+        scrittore.scriviStringa(base.getId());
+        scrittore.scriviStringa(base.getNome());
+        scrittore.scriviStringaInternata(base.getTipo());
+        scrittore.scriviDouble(base.getPrezzoBase());
+        scrittore.scriviVarint(sconti.size());
+        for (double sconto : sconti) {
+            scrittore.scriviDouble(sconto);
+        }
+        scrittore.chiudiRecord(record);
+    }
+    
+    public static ArticoloAbbigliamento decodificaArticolo(LettoreBinario lettore) {
+        int fine = lettore.apriRecord();
+        ArticoloAbbigliamento articolo = new ArticoloAbbigliamentoBase(
+            lettore.leggiStringa(), lettore.leggiStringa(), lettore.leggiStringaInternata(), lettore.leggiDouble());
+        int numeroSconti = lettore.leggiVarint();
+        for (int i = 0; i < numeroSconti; i++) {
+            articolo = new DecoratoreSconto(articolo, lettore.leggiDouble());
+        }
+        lettore.chiudiRecord(fine);
+        return articolo;
+    }
+    
+    public static void codificaOrdine(ScrittoreBinario scrittore, Ordine ordine) {
+        int record = scrittore.iniziaRecord();
+        scrittore.scriviStringa(ordine.getIdOrdine());
+        scrittore.scriviStringa(ordine.getIdCliente());
+        scrittore.scriviByte(ordine.getStato().ordinal());
+        scrittore.scriviDouble(ordine.getTotale());
+        codificaPagamento(scrittore, ordine.getStrategiaPagamento());
+        StrategiaSpedizione spedizione = ordine.getStrategiaSpedizione();
+        scrittore.scriviStringaInternata(spedizione != null ? spedizione.getMetodoSpedizione() : null);
+        
+        scrittore.scriviVarint(ordine.getArticoli().size());
+        for (ArticoloAbbigliamento articolo : ordine.getArticoli()) {
+            codificaArticolo(scrittore, articolo);
+        }
+        
+        List<Osservatore> osservatori = ordine.getOsservatori();
+        scrittore.scriviVarint(osservatori.size());
+        for (Osservatore osservatore : osservatori) {
+            if (!(osservatore instanceof ServizioNotifiche)) {
+                throw new IllegalArgumentException("Osservatore non supportato: " + osservatore.getClass().getSimpleName());
+            }
+            scrittore.scriviStringa(((ServizioNotifiche) osservatore).getEmailUtente());
+        }
+        scrittore.scriviLong(ordine.getDataOrdine());
+        scrittore.scriviDouble(ordine.getScontoApplicato());
+        scrittore.chiudiRecord(record);
+    }
+    
+    public static Ordine decodificaOrdine(LettoreBinario lettore) {
+        int fine = lettore.apriRecord();
+        Ordine ordine = new Ordine(lettore.leggiStringa(), lettore.leggiStringa());
+        ordine.setStato(STATI[lettore.leggiByte()]);
+        ordine.setTotale(lettore.leggiDouble());
+        ordine.setStrategiaPagamento(decodificaPagamento(lettore));
+        ordine.setStrategiaSpedizione(decodificaSpedizione(lettore.leggiStringaInternata()));
+        
+        int numeroArticoli = lettore.leggiVarint();
+        List<ArticoloAbbigliamento> articoli = new ArrayList<>(numeroArticoli);
+        for (int i = 0; i < numeroArticoli; i++) {
+            articoli.add(decodificaArticolo(lettore));
+        }
+        ordine.setArticoli(articoli);
+        
+        int numeroOsservatori = lettore.leggiVarint();
+        for (int i = 0; i < numeroOsservatori; i++) {
+            ordine.registraOsservatore(new ServizioNotifiche(lettore.leggiStringa()));
+        }
+        if (lettore.haAltriCampi(fine)) {
+            ordine.setDataOrdine(lettore.leggiLong());
+            ordine.setScontoApplicato(lettore.leggiDouble());
+        }
+        lettore.chiudiRecord(fine);
+        return ordine;
+    }
+    
+    private static void codificaPagamento(ScrittoreBinario scrittore, StrategiaPagamento pagamento) {
+        if (pagamento == null) {
+            scrittore.scriviStringaInternata(null);
+        } else if (pagamento instanceof PagamentoCartaCredito) {
+            scrittore.scriviStringaInternata(pagamento.getMetodoPagamento());
+            scrittore.scriviStringa(((PagamentoCartaCredito) pagamento).getUltimeCifre());
+        } else if (pagamento instanceof PagamentoPayPal) {
+            scrittore.scriviStringaInternata(pagamento.getMetodoPagamento());
+            scrittore.scriviStringa(((PagamentoPayPal) pagamento).getEmail());
+        } else {
+            throw new IllegalArgumentException("Pagamento non supportato: " + pagamento.getMetodoPagamento());
+        }
+    }
+    
+    private static StrategiaPagamento decodificaPagamento(LettoreBinario lettore) {
+        String metodo = lettore.leggiStringaInternata();
+        if (metodo == null) {
+            return null;
+        }
+        switch (metodo) {
+            case "Carta di Credito":
+                // Le versioni precedenti contenevano il numero completo: si maschera comunque
+                return new PagamentoCartaCredito(PagamentoCartaCredito.mascheraNumero(lettore.leggiStringa()));
+            case "PayPal":
+                return new PagamentoPayPal(lettore.leggiStringa());
+            default:
+                throw new IllegalArgumentException("Pagamento sconosciuto: " + metodo);
+        }
+    }
+    
+    private static StrategiaSpedizione decodificaSpedizione(String metodo) {
+        if (metodo == null) {
+            return null;
+        }
+        TabellaTariffe tariffe = MotoreSpedizioni.getIstanza().getTabella();
+        int corriere = tariffe.indiceDi(metodo);
+        if (corriere >= 0) {
+            return new SpedizioneTariffata(tariffe, corriere);
+        }
+        switch (metodo) {
+            case "Spedizione Standard":
+                return new SpedizioneStandard();
+            case "Spedizione Express":
+                return new SpedizioneExpress();
+            default:
+                // Corriere non più in tabella: si conserva il nome
+                return new SpedizioneTariffata(metodo);
+        }
+    }
+    
+    public static void codificaUtente(ScrittoreBinario scrittore, Utente utente) {
+        int record = scrittore.iniziaRecord();
+        scrittore.scriviStringaInternata(utente.getRuolo());
+        scrittore.scriviStringa(utente.getId());
+        scrittore.scriviStringa(utente.getEmail());
+        scrittore.scriviStringa(utente.getNickname());
+        scrittore.scriviStringa(utente.getPassword());
+        if (utente instanceof UtenteCliente) {
+            UtenteCliente cliente = (UtenteCliente) utente;
+            scrittore.scriviVarint(cliente.getCarrello().size());
+            for (ArticoloAbbigliamento articolo : cliente.getCarrello()) {
+                codificaArticolo(scrittore, articolo);
+            }
+            // Lo storico è salvato come riferimenti agli ID ordine
+            scrittore.scriviVarint(cliente.getStoricoOrdini().size());
+            for (Ordine ordine : cliente.getStoricoOrdini()) {
+                scrittore.scriviStringa(ordine.getIdOrdine());
+            }
+        }
+        scrittore.chiudiRecord(record);
+    }
+    
+    // risolviOrdine può essere null: in quel caso lo storico non viene ricostruito
+    public static Utente decodificaUtente(LettoreBinario lettore, Function<String, Ordine> risolviOrdine) {
+        int fine = lettore.apriRecord();
+        String ruolo = lettore.leggiStringaInternata();
+        String id = lettore.leggiStringa();
+        String email = lettore.leggiStringa();
+        String nickname = lettore.leggiStringa();
+        String password = lettore.leggiStringa();
+        
+        Utente utente;
+        if ("AMMINISTRATORE".equals(ruolo)) {
+            utente = new FabbricaAmministratori().creaUtente(id, email, nickname, password);
+        } else {
+            UtenteCliente cliente = (UtenteCliente) new FabbricaClienti().creaUtente(id, email, nickname, password);
+            int numeroCarrello = lettore.leggiVarint();
+            for (int i = 0; i < numeroCarrello; i++) {
+                cliente.aggiungiAlCarrello(decodificaArticolo(lettore));
+            }
+            int numeroStorico = lettore.leggiVarint();
+            for (int i = 0; i < numeroStorico; i++) {
+                String idOrdine = lettore.leggiStringa();
+                Ordine ordine = risolviOrdine != null ? risolviOrdine.apply(idOrdine) : null;
+                if (ordine != null) {
+                    cliente.aggiungiOrdine(ordine);
+                }
+            }
+            utente = cliente;
+        }
+        lettore.chiudiRecord(fine);
+        return utente;
+    }
+}
+
+// ================ AVVIO RAPIDO ================
+// Immagine del database: intestazione 'E''I' + versione + contatori ID, poi
+// una sequenza di sezioni (tipo, lunghezza, flusso CodecBinario autonomo).
+// Ogni sezione ha la propria tabella stringhe, quindi si decodificano in parallelo.
+class ImmagineDatabase {
+    private static final byte MAGIC_1 = 'E';
+    private static final byte MAGIC_2 = 'I';
+    private static final byte VERSIONE = 1;
+    private static final byte SEZIONE_UTENTI = 'U';
+    private static final byte SEZIONE_CATALOGO = 'C';
+    private static final byte SEZIONE_ORDINI = 'O';
+    private static final int RECORD_PER_SEZIONE = 50_000;
+    
+    private final List<Utente> utenti = new ArrayList<>();
+    private final List<ArticoloAbbigliamento> articoli = new ArrayList<>();
+    private final List<Ordine> ordini = new ArrayList<>();
+    private int prossimoIdUtente;
+    private int prossimoIdOrdine;
+    
+    public List<Utente> getUtenti() { return utenti; }
+    public List<ArticoloAbbigliamento> getArticoli() { return articoli; }
+    public List<Ordine> getOrdini() { return ordini; }
+    public int getProssimoIdUtente() { return prossimoIdUtente; }
+    public int getProssimoIdOrdine() { return prossimoIdOrdine; }
+    
+    public static void salva(Path file, List<Utente> utenti, List<ArticoloAbbigliamento> articoli,
+                             List<Ordine> ordini, int prossimoIdUtente, int prossimoIdOrdine) throws IOException {
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer intestazione = ByteBuffer.allocate(11);
+            intestazione.put(MAGIC_1).put(MAGIC_2).put(VERSIONE).putInt(prossimoIdUtente).putInt(prossimoIdOrdine).flip();
+            scriviTutto(canale, intestazione);
+            
+            for (int da = 0; da < utenti.size(); da += RECORD_PER_SEZIONE) {
+                ScrittoreBinario scrittore = new ScrittoreBinario(1 << 16);
+                for (Utente utente : utenti.subList(da, Math.min(da + RECORD_PER_SEZIONE, utenti.size()))) {
+                    CodecBinario.codificaUtente(scrittore, utente);
+                }
+                scriviSezione(canale, SEZIONE_UTENTI, scrittore.getBuffer());
+            }
+            for (int da = 0; da < articoli.size(); da += RECORD_PER_SEZIONE) {
+                ScrittoreBinario scrittore = new ScrittoreBinario(1 << 16);
+                for (ArticoloAbbigliamento articolo : articoli.subList(da, Math.min(da + RECORD_PER_SEZIONE, articoli.size()))) {
+                    CodecBinario.codificaArticolo(scrittore, articolo);
+                }
+                scriviSezione(canale, SEZIONE_CATALOGO, scrittore.getBuffer());
+            }
+            for (int da = 0; da < ordini.size(); da += RECORD_PER_SEZIONE) {
+                ScrittoreBinario scrittore = new ScrittoreBinario(1 << 16);
+                for (Ordine ordine : ordini.subList(da, Math.min(da + RECORD_PER_SEZIONE, ordini.size()))) {
+                    CodecBinario.codificaOrdine(scrittore, ordine);
+                }
+                scriviSezione(canale, SEZIONE_ORDINI, scrittore.getBuffer());
+            }
+        }
+    }
+    
+    private static void scriviSezione(FileChannel canale, byte tipo, ByteBuffer contenuto) throws IOException {
+        ByteBuffer intestazione = ByteBuffer.allocate(5);
+        intestazione.put(tipo).putInt(contenuto.remaining()).flip();
+        scriviTutto(canale, intestazione);
+        scriviTutto(canale, contenuto);
+    }
+    
+    private static void scriviTutto(FileChannel canale, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canale.write(buffer);
+        }
+    }
+    
+    // Le sezioni sono mappate in memoria e decodificate in parallelo sul pool
+    @SuppressWarnings("unchecked")
+    public static ImmagineDatabase carica(Path file, ForkJoinPool pool) throws IOException {
+        ImmagineDatabase immagine = new ImmagineDatabase();
+        List<Byte> tipi = new ArrayList<>();
+        List<Callable<List<?>>> compiti = new ArrayList<>();
+        
+        try (FileChannel canale = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer intestazione = leggi(canale, 0, 11);
+            if (intestazione.get() != MAGIC_1 || intestazione.get() != MAGIC_2) {
+                throw new IOException("Immagine database non valida: " + file);
+            }
+            if (intestazione.get() > VERSIONE) {
+                throw new IOException("Versione immagine non supportata: " + file);
+            }
+            immagine.prossimoIdUtente = intestazione.getInt();
+            immagine.prossimoIdOrdine = intestazione.getInt();
+            
+            long posizione = 11;
+            while (posizione < canale.size()) {
+                ByteBuffer intestazioneSezione = leggi(canale, posizione, 5);
+                byte tipo = intestazioneSezione.get();
+                int lunghezza = intestazioneSezione.getInt();
+                ByteBuffer sezione = canale.map(FileChannel.MapMode.READ_ONLY, posizione + 5, lunghezza);
+                tipi.add(tipo);
+                compiti.add(() -> decodificaSezione(tipo, sezione));
+                posizione += 5 + lunghezza;
+            }
+        }
+        
+        List<Future<List<?>>> risultati = pool.invokeAll(compiti);
+        for (int i = 0; i < risultati.size(); i++) {
+            List<?> record = attendi(risultati.get(i));
+            switch (tipi.get(i)) {
+                case SEZIONE_UTENTI:
+                    immagine.utenti.addAll((List<Utente>) record);
+                    break;
+                case SEZIONE_CATALOGO:
+                    immagine.articoli.addAll((List<ArticoloAbbigliamento>) record);
+                    break;
+                default:
+                    immagine.ordini.addAll((List<Ordine>) record);
+            }
+        }
+        return immagine;
+    }
+    
+    private static ByteBuffer leggi(FileChannel canale, long posizione, int lunghezza) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(lunghezza);
+        while (buffer.hasRemaining()) {
+            if (canale.read(buffer, posizione + buffer.position()) < 0) {
+                throw new IOException("Immagine database troncata");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    private static List<?> decodificaSezione(byte tipo, ByteBuffer sezione) {
+        LettoreBinario lettore = new LettoreBinario(sezione);
+        switch (tipo) {
+            case SEZIONE_UTENTI: {
+                List<Utente> utenti = new ArrayList<>();
+                while (lettore.haAltriDati()) {
+                    // Lo storico ordini viene ricostruito dagli ordini stessi
+                    utenti.add(CodecBinario.decodificaUtente(lettore, null));
+                }
+                return utenti;
+            }
+            case SEZIONE_CATALOGO: {
+                List<ArticoloAbbigliamento> articoli = new ArrayList<>();
+                while (lettore.haAltriDati()) {
+                    articoli.add(CodecBinario.decodificaArticolo(lettore));
+                }
+                return articoli;
+            }
+            case SEZIONE_ORDINI: {
+                List<Ordine> ordini = new ArrayList<>();
+                while (lettore.haAltriDati()) {
+                    ordini.add(CodecBinario.decodificaOrdine(lettore));
+                }
+                return ordini;
+            }
+            default:
+                throw new IllegalArgumentException("Sezione immagine sconosciuta: " + (char) tipo);
+        }
+    }
+    
+    // Attende i compiti e propaga il primo errore
+    static void attendiTutti(List<? extends Future<?>> compiti) {
+        for (Future<?> compito : compiti) {
+            attendi(compito);
+        }
+    }
+    
+    static <T> T attendi(Future<T> compito) {
+        try {
+            return compito.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Avvio interrotto", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Errore durante l'avvio: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
+
+// ================ RACCOMANDAZIONI ================
+// Mappa int -> int a indirizzamento aperto, senza boxing
+class MappaConteggi {
+    private static final int VUOTO = -1;
+    private int[] chiavi;
+    private int[] valori;
+    private int dimensione;
+    
+    public MappaConteggi() {
+        this(8);
+    }
+    
+    public MappaConteggi(int capacitaMinima) {
+        int capacita = Integer.highestOneBit(Math.max(8, capacitaMinima * 2 - 1));
+        chiavi = new int[capacita];
+        valori = new int[capacita];
+        Arrays.fill(chiavi, VUOTO);
+    }
+    
+    private int slot(int chiave) {
+        int maschera = chiavi.length - 1;
+        int i = (chiave * 0x9E3779B9) >>> 7 & maschera;
+        while (chiavi[i] != VUOTO && chiavi[i] != chiave) {
+            i = (i + 1) & maschera;
+        }
+        return i;
+    }
+    
+    public int incrementa(int chiave) {
+        int i = slot(chiave);
+        if (chiavi[i] == VUOTO) {
+            if ((dimensione + 1) * 2 > chiavi.length) {
+                ridimensiona(chiavi.length * 2);
+                i = slot(chiave);
+            }
+            chiavi[i] = chiave;
+            dimensione++;
+        }
+        return ++valori[i];
+    }
+    
+    public int get(int chiave) {
+        int i = slot(chiave);
+        return chiavi[i] == VUOTO ? 0 : valori[i];
+    }
+    
+    public int dimensione() { return dimensione; }
+    public int capacita() { return chiavi.length; }
+    public boolean occupato(int slot) { return chiavi[slot] != VUOTO; }
+    public int chiaveIn(int slot) { return chiavi[slot]; }
+    public int valoreIn(int slot) { return valori[slot]; }
+    
+    private void ridimensiona(int nuovaCapacita) {
+        int[] vecchieChiavi = chiavi;
+        int[] vecchiValori = valori;
+        chiavi = new int[nuovaCapacita];
+        valori = new int[nuovaCapacita];
+        Arrays.fill(chiavi, VUOTO);
+        for (int i = 0; i < vecchieChiavi.length; i++) {
+            if (vecchieChiavi[i] != VUOTO) {
+                int j = slot(vecchieChiavi[i]);
+                chiavi[j] = vecchieChiavi[i];
+                valori[j] = vecchiValori[i];
+            }
+        }
+    }
+    
+    // Tiene solo le daTenere voci con i conteggi più alti
+    public void pota(int daTenere) {
+        if (dimensione <= daTenere) {
+            return;
+        }
+        int[] conteggi = new int[dimensione];
+        int n = 0;
+        for (int i = 0; i < chiavi.length; i++) {
+            if (chiavi[i] != VUOTO) {
+                conteggi[n++] = valori[i];
+            }
+        }
+        Arrays.sort(conteggi);
+        int soglia = conteggi[dimensione - daTenere];
+        int pariDaTenere = 0;
+        for (int i = dimensione - daTenere; i < dimensione && conteggi[i] == soglia; i++) {
+            pariDaTenere++;
+        }
+        
+        int[] vecchieChiavi = chiavi;
+        int[] vecchiValori = valori;
+        chiavi = new int[vecchieChiavi.length];
+        valori = new int[vecchieChiavi.length];
+        Arrays.fill(chiavi, VUOTO);
+        dimensione = 0;
+        for (int i = 0; i < vecchieChiavi.length; i++) {
+            if (vecchieChiavi[i] == VUOTO || vecchiValori[i] < soglia) {
+                continue;
+            }
+            if (vecchiValori[i] == soglia) {
+                if (pariDaTenere == 0) {
+                    continue;
+                }
+                pariDaTenere--;
+            }
+            int j = slot(vecchieChiavi[i]);
+            chiavi[j] = vecchieChiavi[i];
+            valori[j] = vecchiValori[i];
+            dimensione++;
+        }
+    }
+}
+
+// Primi K articoli acquistati insieme a uno SKU, in ordine di conteggio. Immutabile.
+class ClassificaCoAcquisti {
+    static final ClassificaCoAcquisti VUOTA = new ClassificaCoAcquisti(new int[0], new int[0]);
+    
+    final int[] articoli;
+    final int[] conteggi;
+    
+    ClassificaCoAcquisti(int[] articoli, int[] conteggi) {
+        this.articoli = articoli;
+        this.conteggi = conteggi;
+    }
+    
+    // Selezione dei primi k in due array fissi: una sola classifica allocata per SKU
+    static ClassificaCoAcquisti da(MappaConteggi mappa, int k) {
+        int[] articoli = new int[k];
+        int[] conteggi = new int[k];
+        int n = 0;
+        for (int i = 0; i < mappa.capacita(); i++) {
+            if (!mappa.occupato(i)) {
+                continue;
+            }
+            int conteggio = mappa.valoreIn(i);
+            if (n == k && conteggio <= conteggi[k - 1]) {
+                continue;
+            }
+            // A parità di conteggio resta davanti chi è entrato prima
+            int j = n < k ? n++ : k - 1;
+            while (j > 0 && conteggi[j - 1] < conteggio) {
+                articoli[j] = articoli[j - 1];
+                conteggi[j] = conteggi[j - 1];
+                j--;
+            }
+            articoli[j] = mappa.chiaveIn(i);
+            conteggi[j] = conteggio;
+        }
+        return n == 0 ? VUOTA : new ClassificaCoAcquisti(Arrays.copyOf(articoli, n), Arrays.copyOf(conteggi, n));
+    }
+}
+
+// Conteggi di co-acquisto di tutti gli SKU. Un solo scrittore alla volta;
+// i lettori vedono classifiche immutabili pubblicate tramite campi volatile,
+// ricalcolate una volta per lotto solo per gli SKU toccati.
+class StatoCoAcquisti {
+    static final int K = 10;
+    // Limite di vicini per SKU: oltre, si tengono solo i più frequenti
+    static final int MAX_VICINI = 512;
+    // Gli ordini con molti articoli diversi contano solo i primi
+    static final int MAX_ARTICOLI_PER_ORDINE = 64;
+    
+    static class Vicini {
+        final MappaConteggi conteggi = new MappaConteggi();
+        volatile ClassificaCoAcquisti classifica = ClassificaCoAcquisti.VUOTA;
+        boolean daPubblicare;
+        
+        void incrementa(int vicino) {
+            conteggi.incrementa(vicino);
+            if (conteggi.dimensione() > MAX_VICINI) {
+                conteggi.pota(MAX_VICINI / 2);
+            }
+        }
+        
+        void pubblica() {
+            classifica = ClassificaCoAcquisti.da(conteggi, K);
+            daPubblicare = false;
+        }
+    }
+    
+    private final Map<String, Integer> indicePerSku = new ConcurrentHashMap<>();
+    private volatile String[] sku = new String[256];
+    private volatile Vicini[] vicini = new Vicini[256];
+    private int numeroSku;
+    // SKU con conteggi cambiati dall'ultima pubblicazione
+    private int[] modificati = new int[64];
+    private int numeroModificati;
+    
+    int indiceDi(String id) {
+        Integer indice = indicePerSku.get(id);
+        if (indice != null) {
+            return indice;
+        }
+        if (numeroSku == sku.length) {
+            String[] nuoviSku = Arrays.copyOf(sku, numeroSku * 2);
+            Vicini[] nuoviVicini = Arrays.copyOf(vicini, numeroSku * 2);
+            sku = nuoviSku;
+            vicini = nuoviVicini;
+        }
+        sku[numeroSku] = id;
+        vicini[numeroSku] = new Vicini();
+        indicePerSku.put(id, numeroSku);
+        return numeroSku++;
+    }
+    
+    int[] indiciDistinti(Ordine ordine) {
+        List<ArticoloAbbigliamento> articoli = ordine.getArticoli();
+        int[] indici = new int[articoli.size()];
+        for (int i = 0; i < indici.length; i++) {
+            indici[i] = indiceDi(articoli.get(i).getId());
+        }
+        int[] distinti = Arrays.stream(indici).distinct().toArray();
+        return distinti.length > MAX_ARTICOLI_PER_ORDINE ? Arrays.copyOf(distinti, MAX_ARTICOLI_PER_ORDINE) : distinti;
+    }
+    
+    void registra(Ordine ordine) {
+        int[] articoli = indiciDistinti(ordine);
+        registra(articoli, 0, 1);
+        for (int a : articoli) {
+            if (!vicini[a].daPubblicare) {
+                vicini[a].daPubblicare = true;
+                if (numeroModificati == modificati.length) {
+                    modificati = Arrays.copyOf(modificati, numeroModificati * 2);
+                }
+                modificati[numeroModificati++] = a;
+            }
+        }
+    }
+    
+    void pubblicaModificati() {
+        for (int i = 0; i < numeroModificati; i++) {
+            vicini[modificati[i]].pubblica();
+        }
+        numeroModificati = 0;
+    }
+    
+    // Pubblica tutti gli SKU della partizione (ricostruzione parallela)
+    void pubblica(int partizione, int partizioni) {
+        for (int a = partizione; a < numeroSku; a += partizioni) {
+            vicini[a].pubblica();
+        }
+    }
+    
+    // Conta le coppie con sorgente nella partizione (sorgente % partizioni == partizione)
+    void registra(int[] articoli, int partizione, int partizioni) {
+        for (int a : articoli) {
+            if (a % partizioni != partizione) {
+                continue;
+            }
+            Vicini viciniA = vicini[a];
+            for (int b : articoli) {
+                if (b != a) {
+                    viciniA.incrementa(b);
+                }
+            }
+        }
+    }
+    
+    ClassificaCoAcquisti classifica(String id) {
+        Integer indice = indicePerSku.get(id);
+        return indice != null ? vicini[indice].classifica : ClassificaCoAcquisti.VUOTA;
+    }
+    
+    String sku(int indice) {
+        return sku[indice];
+    }
+}
+
+// Indice "spesso acquistati insieme": segue il registro ordini (che contiene
+// solo ordini pagati) ed è ricostruibile in parallelo dallo storico completo.
+class IndiceCoAcquisti {
+    private static final IndiceCoAcquisti istanza = new IndiceCoAcquisti();
+    private volatile StatoCoAcquisti stato = new StatoCoAcquisti();
+    // Posizione nel registro ordini fin dove i conteggi sono aggiornati
+    private int ordiniRegistrati;
+    
+    private IndiceCoAcquisti() {
+    }
+    
+    public static IndiceCoAcquisti getIstanza() {
+        return istanza;
+    }
+    
+    // Chiamato dal thread indici della pipeline, fuori dal percorso del checkout
+    public synchronized void aggiorna() {
+        List<Ordine> nuovi = DatabaseEcommerce.getIstanza().getOrdiniDa(ordiniRegistrati);
+        for (Ordine ordine : nuovi) {
+            stato.registra(ordine);
+        }
+        stato.pubblicaModificati();
+        ordiniRegistrati += nuovi.size();
+    }
+    
+    // Ricostruzione su un registro che contiene esattamente lo storico indicato (avvio da immagine)
+    public void ricostruisci(List<Ordine> storico, ForkJoinPool pool) {
+        StatoCoAcquisti nuovo = costruisci(storico, pool);
+        synchronized (this) {
+            stato = nuovo;
+            ordiniRegistrati = storico.size();
+        }
+    }
+    
+    // Gli ordini persistiti durante la ricostruzione vengono aggiunti prima dello scambio
+    public void ricostruisci() {
+        List<Ordine> storico = DatabaseEcommerce.getIstanza().getOrdini();
+        StatoCoAcquisti nuovo = costruisci(storico, ForkJoinPool.commonPool());
+        synchronized (this) {
+            List<Ordine> successivi = DatabaseEcommerce.getIstanza().getOrdiniDa(storico.size());
+            for (Ordine ordine : successivi) {
+                nuovo.registra(ordine);
+            }
+            nuovo.pubblicaModificati();
+            stato = nuovo;
+            ordiniRegistrati = storico.size() + successivi.size();
+        }
+    }
+    
+    // Ogni compito possiede un sottoinsieme di SKU sorgente, quindi non servono lock né fusioni
+    private StatoCoAcquisti costruisci(List<Ordine> storico, ForkJoinPool pool) {
+        StatoCoAcquisti nuovo = new StatoCoAcquisti();
+        int[][] articoliPerOrdine = new int[storico.size()][];
+        for (int i = 0; i < articoliPerOrdine.length; i++) {
+            articoliPerOrdine[i] = nuovo.indiciDistinti(storico.get(i));
+        }
+        
+        int partizioni = pool.getParallelism();
+        List<Callable<Void>> compiti = new ArrayList<>();
+        for (int p = 0; p < partizioni; p++) {
+            int partizione = p;
+            compiti.add(() -> {
+                for (int[] articoli : articoliPerOrdine) {
+                    nuovo.registra(articoli, partizione, partizioni);
+                }
+                nuovo.pubblica(partizione, partizioni);
+                return null;
+            });
+        }
+        ImmagineDatabase.attendiTutti(pool.invokeAll(compiti));
+        return nuovo;
+    }
+    
+    public List<String> consiglia(List<ArticoloAbbigliamento> carrello, int massimo) {
+        StatoCoAcquisti corrente = stato;
+        List<String> nelCarrello = new ArrayList<>();
+        for (ArticoloAbbigliamento articolo : carrello) {
+            nelCarrello.add(articolo.getId());
+        }
+        
+        Map<String, Integer> punteggi = new LinkedHashMap<>();
+        for (String id : nelCarrello) {
+            ClassificaCoAcquisti classifica = corrente.classifica(id);
+            for (int i = 0; i < classifica.articoli.length; i++) {
+                String candidato = corrente.sku(classifica.articoli[i]);
+                if (!nelCarrello.contains(candidato)) {
+                    punteggi.merge(candidato, classifica.conteggi[i], Integer::sum);
+                }
+            }
+        }
+        
+        List<Map.Entry<String, Integer>> ordinati = new ArrayList<>(punteggi.entrySet());
+        ordinati.sort((a, b) -> b.getValue() - a.getValue());
+        List<String> consigli = new ArrayList<>();
+        for (int i = 0; i < Math.min(massimo, ordinati.size()); i++) {
+            consigli.add(ordinati.get(i).getKey());
+        }
+        return consigli;
+    }
+}
+
+// ================ REPORT VENDITE ================
+// Dizionario stringa -> codice intero, scritto da un solo thread
+class DizionarioColonna {
+    private final Map<String, Integer> codici = new HashMap<>();
+    private volatile String[] valori = new String[16];
+    private int dimensione;
+    
+    int codice(String valore) {
+        Integer codice = codici.get(valore);
+        if (codice != null) {
+            return codice;
+        }
+        if (dimensione == valori.length) {
+            valori = Arrays.copyOf(valori, dimensione * 2);
+        }
+        valori[dimensione] = valore;
+        codici.put(valore, dimensione);
+        return dimensione++;
+    }
+    
+    String[] valori() {
+        return valori;
+    }
+}
+
+// Proiezione colonnare e append-only degli ordini pagati: un array primitivo
+// per attributo. Segue il registro dal thread indici della pipeline, fuori dal
+// checkout; i report leggono senza lock il prefisso pubblicato da numeroOrdini.
+// Ricavi = merce al netto delle promozioni, spedizione esclusa; lo sconto
+// dell'ordine è ripartito sulle righe in proporzione al prezzo.
+class ProiezioneOrdini {
+    private static final ProiezioneOrdini istanza = new ProiezioneOrdini();
+    // Ordini archiviati senza data (codec versione 1)
+    static final int GIORNO_IGNOTO = Integer.MIN_VALUE;
+    
+    static class Colonne {
+        final int[] giorno;
+        final double[] ricavo;
+        final double[] totale;
+        final double[] sconto;
+        final byte[] pagamento;
+        final byte[] spedizione;
+        final int[] fineRighe;
+        final int[] tipoRiga;
+        final double[] importoRiga;
+        
+        Colonne(int ordini, int righe) {
+            giorno = new int[ordini];
+            ricavo = new double[ordini];
+            totale = new double[ordini];
+            sconto = new double[ordini];
+            pagamento = new byte[ordini];
+            spedizione = new byte[ordini];
+            fineRighe = new int[ordini];
+            tipoRiga = new int[righe];
+            importoRiga = new double[righe];
+        }
+        
+        Colonne copia(int ordini, int righe) {
+            Colonne nuove = new Colonne(Math.max(ordini, giorno.length), Math.max(righe, tipoRiga.length));
+            System.arraycopy(giorno, 0, nuove.giorno, 0, giorno.length);
+            System.arraycopy(ricavo, 0, nuove.ricavo, 0, ricavo.length);
+            System.arraycopy(totale, 0, nuove.totale, 0, totale.length);
+            System.arraycopy(sconto, 0, nuove.sconto, 0, sconto.length);
+            System.arraycopy(pagamento, 0, nuove.pagamento, 0, pagamento.length);
+            System.arraycopy(spedizione, 0, nuove.spedizione, 0, spedizione.length);
+            System.arraycopy(fineRighe, 0, nuove.fineRighe, 0, fineRighe.length);
+            System.arraycopy(tipoRiga, 0, nuove.tipoRiga, 0, tipoRiga.length);
+            System.arraycopy(importoRiga, 0, nuove.importoRiga, 0, importoRiga.length);
+            return nuove;
+        }
+    }
+    
+    private final DizionarioColonna tipi = new DizionarioColonna();
+    private final DizionarioColonna metodiPagamento = new DizionarioColonna();
+    private final DizionarioColonna metodiSpedizione = new DizionarioColonna();
+    private volatile Colonne colonne = new Colonne(1024, 4096);
+    private volatile int numeroOrdini;
+    private int numeroRighe;
+    // I giorni seguono il fuso del negozio, non UTC
+    private final ZoneId zona;
+    
+    private ProiezioneOrdini() {
+        zona = ZoneId.systemDefault();
+    }
+    
+    public static ProiezioneOrdini getIstanza() {
+        return istanza;
+    }
+    
+    // Accoda gli ordini persistiti dopo l'ultimo aggiornamento
+    public synchronized void aggiorna() {
+        List<Ordine> nuovi = DatabaseEcommerce.getIstanza().getOrdiniDa(numeroOrdini);
+        if (nuovi.isEmpty()) {
+            return;
+        }
+        int righeNuove = 0;
+        for (Ordine ordine : nuovi) {
+            righeNuove += ordine.getArticoli().size();
+        }
+        
+        int n = numeroOrdini;
+        Colonne correnti = colonne;
+        if (n + nuovi.size() > correnti.giorno.length || numeroRighe + righeNuove > correnti.tipoRiga.length) {
+            correnti = correnti.copia(Math.max(correnti.giorno.length * 2, n + nuovi.size()),
+                                      Math.max(correnti.tipoRiga.length * 2, numeroRighe + righeNuove));
+            colonne = correnti;
+        }
+        
+        for (Ordine ordine : nuovi) {
+            double lordo = 0;
+            for (ArticoloAbbigliamento articolo : ordine.getArticoli()) {
+                lordo += articolo.getPrezzo();
+            }
+            double ricavo = lordo - ordine.getScontoApplicato();
+            double quotaNetta = lordo > 0 ? ricavo / lordo : 0;
+            
+            long dataOrdine = ordine.getDataOrdine();
+            correnti.giorno[n] = dataOrdine == 0 ? GIORNO_IGNOTO : giornoLocale(dataOrdine);
+            correnti.ricavo[n] = ricavo;
+            correnti.totale[n] = ordine.getTotale();
+            correnti.sconto[n] = ordine.getScontoApplicato();
+            correnti.pagamento[n] = (byte) metodiPagamento.codice(ordine.getStrategiaPagamento().getMetodoPagamento());
+            correnti.spedizione[n] = (byte) metodiSpedizione.codice(ordine.getStrategiaSpedizione().getMetodoSpedizione());
+            for (ArticoloAbbigliamento articolo : ordine.getArticoli()) {
+                correnti.tipoRiga[numeroRighe] = tipi.codice(articolo.getTipo());
+                correnti.importoRiga[numeroRighe] = articolo.getPrezzo() * quotaNetta;
+                numeroRighe++;
+            }
+            correnti.fineRighe[n] = numeroRighe;
+            n++;
+        }
+        numeroOrdini = n;
+    }
+    
+    private int giornoLocale(long istante) {
+        long scarto = zona.getRules().getOffset(Instant.ofEpochMilli(istante)).getTotalSeconds() * 1000L;
+        return (int) Math.floorDiv(istante + scarto, 86_400_000L);
+    }
+    
+    public ReportVendite calcolaReport(ForkJoinPool pool) {
+        // Recupera gli ordini arrivati dopo l'ultimo giro del thread indici
+        aggiorna();
+        int n = numeroOrdini;
+        Colonne istantanea = colonne;
+        String[] nomiTipi = tipi.valori();
+        String[] nomiPagamenti = metodiPagamento.valori();
+        String[] nomiSpedizioni = metodiSpedizione.valori();
+        if (n == 0) {
+            return new ReportVendite(new AggregatoVendite(0, 0, 0, 0), 0, zona, nomiTipi, nomiPagamenti, nomiSpedizioni);
+        }
+        
+        // Primo passaggio: intervallo dei giorni noti, per dimensionare gli array per giorno
+        IntSummaryStatistics giorni = Arrays.stream(istantanea.giorno, 0, n).parallel()
+            .filter(giorno -> giorno != GIORNO_IGNOTO).summaryStatistics();
+        int giornoMinimo = giorni.getCount() > 0 ? giorni.getMin() : 0;
+        int numeroGiorni = giorni.getCount() > 0 ? giorni.getMax() - giornoMinimo + 1 : 0;
+        
+        AggregatoVendite totale = pool.invoke(new CompitoAggregazione(istantanea, 0, n, giornoMinimo,
+            numeroGiorni, nomiTipi.length, nomiPagamenti.length, nomiSpedizioni.length));
+        return new ReportVendite(totale, giornoMinimo, zona, nomiTipi, nomiPagamenti, nomiSpedizioni);
+    }
+}
+
+// Aggregati parziali di un intervallo di ordini, tutti in array primitivi
+class AggregatoVendite {
+    long ordini;
+    long articoli;
+    long ordiniSenzaData;
+    double ricavi;
+    double sconti;
+    double incassato;
+    final double[] ricaviPerGiorno;
+    final double[] ricaviPerTipo;
+    final long[] ordiniPerPagamento;
+    final double[] ricaviPerPagamento;
+    final long[] ordiniPerSpedizione;
+    final double[] ricaviPerSpedizione;
+    
+    AggregatoVendite(int giorni, int tipi, int pagamenti, int spedizioni) {
+        ricaviPerGiorno = new double[giorni];
+        ricaviPerTipo = new double[tipi];
+        ordiniPerPagamento = new long[pagamenti];
+        ricaviPerPagamento = new double[pagamenti];
+        ordiniPerSpedizione = new long[spedizioni];
+        ricaviPerSpedizione = new double[spedizioni];
+    }
+    
+    AggregatoVendite unisci(AggregatoVendite altro) {
+        ordini += altro.ordini;
+        articoli += altro.articoli;
+        ordiniSenzaData += altro.ordiniSenzaData;
+        ricavi += altro.ricavi;
+        sconti += altro.sconti;
+        incassato += altro.incassato;
+        somma(ricaviPerGiorno, altro.ricaviPerGiorno);
+        somma(ricaviPerTipo, altro.ricaviPerTipo);
+        somma(ricaviPerPagamento, altro.ricaviPerPagamento);
+        somma(ricaviPerSpedizione, altro.ricaviPerSpedizione);
+        for (int i = 0; i < ordiniPerPagamento.length; i++) {
+            ordiniPerPagamento[i] += altro.ordiniPerPagamento[i];
+        }
+        for (int i = 0; i < ordiniPerSpedizione.length; i++) {
+            ordiniPerSpedizione[i] += altro.ordiniPerSpedizione[i];
+        }
+        return this;
+    }
+    
+    private static void somma(double[] destinazione, double[] sorgente) {
+        for (int i = 0; i < destinazione.length; i++) {
+            destinazione[i] += sorgente[i];
+        }
+    }
+}
+
+class CompitoAggregazione extends RecursiveTask<AggregatoVendite> {
+    private static final long serialVersionUID = 1L;
+    private static final int SOGLIA = 1 << 16;
+    
+    private final ProiezioneOrdini.Colonne colonne;
+    private final int da;
+    private final int a;
+    private final int giornoMinimo;
+    private final int giorni;
+    private final int tipi;
+    private final int pagamenti;
+    private final int spedizioni;
+    
+    CompitoAggregazione(ProiezioneOrdini.Colonne colonne, int da, int a, int giornoMinimo, int giorni,
+                        int tipi, int pagamenti, int spedizioni) {
+        this.colonne = colonne;
+        this.da = da;
+        this.a = a;
+        this.giornoMinimo = giornoMinimo;
+        this.giorni = giorni;
+        this.tipi = tipi;
+        this.pagamenti = pagamenti;
+        this.spedizioni = spedizioni;
+    }
+    
+    @Override
+    protected AggregatoVendite compute() {
+        if (a - da > SOGLIA) {
+            int meta = (da + a) >>> 1;
+            CompitoAggregazione sinistra = new CompitoAggregazione(colonne, da, meta, giornoMinimo, giorni, tipi, pagamenti, spedizioni);
+            CompitoAggregazione destra = new CompitoAggregazione(colonne, meta, a, giornoMinimo, giorni, tipi, pagamenti, spedizioni);
+            sinistra.fork();
+            return destra.compute().unisci(sinistra.join());
+        }
+        
+        AggregatoVendite parziale = new AggregatoVendite(giorni, tipi, pagamenti, spedizioni);
+        for (int i = da; i < a; i++) {
+            double ricavo = colonne.ricavo[i];
+            parziale.ricavi += ricavo;
+            parziale.sconti += colonne.sconto[i];
+            parziale.incassato += colonne.totale[i];
+            int giorno = colonne.giorno[i];
+            if (giorno == ProiezioneOrdini.GIORNO_IGNOTO) {
+                parziale.ordiniSenzaData++;
+            } else {
+                parziale.ricaviPerGiorno[giorno - giornoMinimo] += ricavo;
+            }
+            int pagamento = colonne.pagamento[i] & 0xFF;
+            int spedizione = colonne.spedizione[i] & 0xFF;
+            parziale.ordiniPerPagamento[pagamento]++;
+            parziale.ricaviPerPagamento[pagamento] += ricavo;
+            parziale.ordiniPerSpedizione[spedizione]++;
+            parziale.ricaviPerSpedizione[spedizione] += ricavo;
+        }
+        int primaRiga = da == 0 ? 0 : colonne.fineRighe[da - 1];
+        int ultimaRiga = colonne.fineRighe[a - 1];
+        for (int r = primaRiga; r < ultimaRiga; r++) {
+            parziale.ricaviPerTipo[colonne.tipoRiga[r]] += colonne.importoRiga[r];
+        }
+        parziale.ordini = a - da;
+        parziale.articoli = ultimaRiga - primaRiga;
+        return parziale;
+    }
+}
+
+class ReportVendite {
+    private final AggregatoVendite aggregato;
+    private final int giornoMinimo;
+    private final ZoneId zona;
+    private final String[] tipi;
+    private final String[] pagamenti;
+    private final String[] spedizioni;
+    
+    ReportVendite(AggregatoVendite aggregato, int giornoMinimo, ZoneId zona, String[] tipi, String[] pagamenti, String[] spedizioni) {
+        this.aggregato = aggregato;
+        this.giornoMinimo = giornoMinimo;
+        this.zona = zona;
+        this.tipi = tipi;
+        this.pagamenti = pagamenti;
+        this.spedizioni = spedizioni;
+    }
+    
+    public long getNumeroOrdini() { return aggregato.ordini; }
+    // Fuso in cui sono calcolati i giorni di getRicaviPerGiorno
+    public ZoneId getZona() { return zona; }
+    public long getOrdiniSenzaData() { return aggregato.ordiniSenzaData; }
+    // Merce al netto delle promozioni, spedizione esclusa: è la base di tutte le ripartizioni
+    public double getRicavi() { return aggregato.ricavi; }
+    public double getSconti() { return aggregato.sconti; }
+    public double getIncassato() { return aggregato.incassato; }
+    public double getSpeseSpedizione() { return aggregato.incassato - aggregato.ricavi; }
+    public double getScontrinoMedio() { return aggregato.ordini == 0 ? 0 : aggregato.ricavi / aggregato.ordini; }
+    public double getArticoliMedi() { return aggregato.ordini == 0 ? 0 : (double) aggregato.articoli / aggregato.ordini; }
+    
+    // Percentuale degli sconti sul lordo merce (ricavi + sconti)
+    public double getIncidenzaSconti() {
+        double lordo = aggregato.ricavi + aggregato.sconti;
+        return lordo == 0 ? 0 : aggregato.sconti * 100 / lordo;
+    }
+    
+    public Map<LocalDate, Double> getRicaviPerGiorno() {
+        Map<LocalDate, Double> risultato = new LinkedHashMap<>();
+        for (int i = 0; i < aggregato.ricaviPerGiorno.length; i++) {
+            if (aggregato.ricaviPerGiorno[i] != 0) {
+                risultato.put(LocalDate.ofEpochDay(giornoMinimo + i), aggregato.ricaviPerGiorno[i]);
+            }
+        }
+        return risultato;
+    }
+    
+    public Map<String, Double> getRicaviPerTipo() {
+        Map<String, Double> risultato = new LinkedHashMap<>();
+        for (int i = 0; i < aggregato.ricaviPerTipo.length; i++) {
+            if (tipi[i] != null) {
+                risultato.put(tipi[i], aggregato.ricaviPerTipo[i]);
+            }
+        }
+        return risultato;
+    }
+    
+    // Valore: {numero ordini, ricavi}
+    public Map<String, double[]> getPerPagamento() {
+        return perMetodo(pagamenti, aggregato.ordiniPerPagamento, aggregato.ricaviPerPagamento);
+    }
+    
+    public Map<String, double[]> getPerSpedizione() {
+        return perMetodo(spedizioni, aggregato.ordiniPerSpedizione, aggregato.ricaviPerSpedizione);
+    }
+    
+    private static Map<String, double[]> perMetodo(String[] nomi, long[] ordini, double[] ricavi) {
+        Map<String, double[]> risultato = new LinkedHashMap<>();
+        for (int i = 0; i < ordini.length; i++) {
+            if (nomi[i] != null) {
+                risultato.put(nomi[i], new double[] {ordini[i], ricavi[i]});
+            }
+        }
+        return risultato;
+    }
+}
+
+// ================ PIPELINE ORDINI ================
+// Registro append-only: scrive solo il thread della pipeline, i lettori
+// vedono sempre un prefisso completo grazie alla dimensione volatile.
+class RegistroOrdini {
+    private volatile Ordine[] elementi = new Ordine[1024];
+    private volatile int dimensione;
+    
+    public void aggiungiTutti(List<Ordine> lotto) {
+        Ordine[] correnti = riserva(lotto.size());
+        int n = dimensione;
+        for (Ordine ordine : lotto) {
+            correnti[n++] = ordine;
+        }
+        dimensione = n;
+    }
+    
+    private Ordine[] riserva(int quantita) {
+        Ordine[] correnti = elementi;
+        int richiesta = dimensione + quantita;
+        if (richiesta > correnti.length) {
+            correnti = Arrays.copyOf(correnti, Math.max(richiesta, correnti.length * 2));
+            elementi = correnti;
+        }
+        return correnti;
+    }
+    
+    public int dimensione() {
+        return dimensione;
+    }
+    
+    public List<Ordine> copia() {
+        return copia(0);
+    }
+    
+    public List<Ordine> copia(int da) {
+        int n = dimensione;
+        return new ArrayList<>(Arrays.asList(elementi).subList(Math.min(da, n), n));
+    }
+    
+    // Scansione del prefisso pubblicato senza copiarlo, fino a limite risultati
+    public List<Ordine> filtra(Predicate<Ordine> criterio, int limite) {
+        int n = dimensione;
+        Ordine[] correnti = elementi;
+        List<Ordine> risultato = new ArrayList<>();
+        for (int i = 0; i < n && risultato.size() < limite; i++) {
+            if (criterio.test(correnti[i])) {
+                risultato.add(correnti[i]);
+            }
+        }
+        return risultato;
+    }
+}
+
+// Pipeline a singolo scrittore sul modello LMAX: i thread chiamanti pubblicano
+// su un anello preallocato, un solo consumatore esegue le fasi
+// validazione -> prezzo -> pagamento -> persistenza -> notifica a lotti.
+// Gli indici derivati seguono il registro su un thread a parte, fuori dal percorso del checkout.
+class PipelineOrdini {
+    private static final int DIMENSIONE_ANELLO = 1024;
+    private static final long INTERVALLO_INDICI_NANOS = 5_000_000;
+    
+    private static class Slot {
+        volatile long sequenza = -1;
+        Ordine ordine;
+        UtenteCliente cliente;
+        boolean valido;
+    }
+    
+    private final DatabaseEcommerce database;
+    private final MotorePromozioni motorePromozioni;
+    private final IndiceCoAcquisti indiceCoAcquisti;
+    private final ProiezioneOrdini proiezioneOrdini;
+    private final Slot[] anello;
+    private final int maschera;
+    private final AtomicLong cursorePubblicazione = new AtomicLong(-1);
+    private final AtomicLong cursoreElaborazione = new AtomicLong(-1);
+    private final List<Ordine> lottoPersistenza = new ArrayList<>(DIMENSIONE_ANELLO);
+    private Thread consumatore;
+    private Thread aggiornatoreIndici;
+    // Vero mentre il thread indici è fermo in attesa di nuovi ordini
+    private volatile boolean indiciInAttesa;
+    
+    public PipelineOrdini(DatabaseEcommerce database) {
+        this.database = database;
+        this.motorePromozioni = MotorePromozioni.getIstanza();
+        this.indiceCoAcquisti = IndiceCoAcquisti.getIstanza();
+        this.proiezioneOrdini = ProiezioneOrdini.getIstanza();
+        this.anello = new Slot[DIMENSIONE_ANELLO];
+        this.maschera = DIMENSIONE_ANELLO - 1;
+        for (int i = 0; i < anello.length; i++) {
+            anello[i] = new Slot();
+        }
+    }
+    
+    public void avvia() {
+        consumatore = new Thread(this::consuma, "pipeline-ordini");
+        consumatore.setDaemon(true);
+        aggiornatoreIndici = new Thread(this::aggiornaIndici, "indici-ordini");
+        aggiornatoreIndici.setDaemon(true);
+        aggiornatoreIndici.start();
+        consumatore.start();
+    }
+    
+    public long pubblica(Ordine ordine, UtenteCliente cliente) {
+        long sequenza = cursorePubblicazione.incrementAndGet();
+        // Attende che lo slot del giro precedente sia stato elaborato
+        while (sequenza - anello.length > cursoreElaborazione.get()) {
+            verificaConsumatore();
+            LockSupport.parkNanos(1_000);
+        }
+        Slot slot = anello[(int) sequenza & maschera];
+        slot.ordine = ordine;
+        slot.cliente = cliente;
+        slot.sequenza = sequenza;
+        LockSupport.unpark(consumatore);
+        return sequenza;
+    }
+    
+    public void attendi(long sequenza) {
+        while (cursoreElaborazione.get() < sequenza) {
+            verificaConsumatore();
+            LockSupport.parkNanos(1_000);
+        }
+    }
+    
+    // Un consumatore terminato non avanzerebbe più il cursore: meglio fallire subito
+    private void verificaConsumatore() {
+        if (!consumatore.isAlive()) {
+            throw new IllegalStateException("Pipeline ordini non più attiva");
+        }
+    }
+    
+    private void consuma() {
+        long prossima = 0;
+        while (true) {
+            // Il lotto comprende tutti gli slot già pubblicati in sequenza
+            long ultima = prossima - 1;
+            while (ultima + 1 - prossima < anello.length
+                   && anello[(int) (ultima + 1) & maschera].sequenza == ultima + 1) {
+                ultima++;
+            }
+            if (ultima < prossima) {
+                // pubblica() sveglia il consumatore: un permesso già concesso non va perso
+                LockSupport.park(this);
+                continue;
+            }
+            try {
+                elaboraLotto(prossima, ultima);
+            } catch (RuntimeException e) {
+                System.out.println("Errore nella pipeline ordini: " + e.getMessage());
+            } finally {
+                // Il cursore avanza sempre, anche se una fase è fallita
+                rilasciaLotto(prossima, ultima);
+                cursoreElaborazione.set(ultima);
+                prossima = ultima + 1;
+            }
+            // Segnale solo se il thread indici è fermo: al più uno per intervallo
+            if (indiciInAttesa) {
+                LockSupport.unpark(aggiornatoreIndici);
+            }
+        }
+    }
+    
+    // Gli indici leggono il registro da dove erano rimasti. Senza nuovi ordini il
+    // thread resta fermo; dopo un segnale attende l'intervallo, così i lotti
+    // arrivati nel frattempo diventano un solo aggiornamento.
+    private void aggiornaIndici() {
+        int ordiniVisti = -1;
+        while (true) {
+            indiciInAttesa = true;
+            // Il flag è scritto prima di rileggere il registro: un lotto persistito
+            // nel frattempo vede il flag e sveglia il thread
+            while (database.getNumeroOrdini() == ordiniVisti) {
+                LockSupport.park(this);
+            }
+            indiciInAttesa = false;
+            LockSupport.parkNanos(INTERVALLO_INDICI_NANOS);
+            ordiniVisti = database.getNumeroOrdini();
+            try {
+                indiceCoAcquisti.aggiorna();
+            } catch (RuntimeException e) {
+                System.out.println("Errore nell'aggiornamento co-acquisti: " + e.getMessage());
+            }
+            try {
+                proiezioneOrdini.aggiorna();
+            } catch (RuntimeException e) {
+                System.out.println("Errore nell'aggiornamento proiezione ordini: " + e.getMessage());
+            }
+        }
+    }
+    
+    private void elaboraLotto(long da, long a) {
+        // Validazione
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            try {
+                slot.valido = slot.cliente != null && !slot.ordine.getArticoli().isEmpty();
+                if (slot.valido) {
+                    slot.ordine.setIdOrdine(database.generaIdOrdine());
+                }
+            } catch (RuntimeException e) {
+                slot.valido = false;
+            }
+        }
+        
+        // Calcolo prezzo
+        long adesso = System.currentTimeMillis();
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            if (slot.valido) {
+                try {
+                    PrezzoCarrello prezzo = motorePromozioni.calcolaPrezzo(slot.ordine.getArticoli());
+                    double costoSpedizione = slot.ordine.getStrategiaSpedizione().calcolaCostoSpedizione(prezzo.getTotale());
+                    slot.ordine.setTotale(prezzo.getTotale() + costoSpedizione);
+                    slot.ordine.setScontoApplicato(prezzo.getSconto());
+                    slot.ordine.setDataOrdine(adesso);
+                } catch (RuntimeException e) {
+                    slot.valido = false;
+                }
+            }
+        }
+        
+        // Pagamento: lo stato diventa PAGATO prima della pubblicazione nel registro
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            if (slot.valido) {
+                try {
+                    slot.valido = slot.ordine.getStrategiaPagamento().elaboraPagamento(slot.ordine.getTotale());
+                } catch (RuntimeException e) {
+                    slot.valido = false;
+                }
+                if (slot.valido) {
+                    slot.ordine.setStato(Ordine.StatoOrdine.PAGATO);
+                }
+            }
+        }
+        
+        // Persistenza in blocco
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            if (slot.valido) {
+                lottoPersistenza.add(slot.ordine);
+            }
+        }
+        try {
+            database.aggiungiOrdini(lottoPersistenza);
+        } catch (RuntimeException e) {
+            for (Ordine ordine : lottoPersistenza) {
+                ordine.setStato(Ordine.StatoOrdine.IN_ATTESA);
+            }
+            for (long s = da; s <= a; s++) {
+                anello[(int) s & maschera].valido = false;
+            }
+        } finally {
+            lottoPersistenza.clear();
+        }
+        
+        // Aggiornamento cliente e notifica
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            if (slot.valido) {
+                try {
+                    slot.cliente.aggiungiOrdine(slot.ordine);
+                    slot.cliente.svuotaCarrello();
+                } catch (RuntimeException e) {
+                    // L'ordine è già pagato e persistito: si prosegue con la notifica
+                }
+                // Solo notifica: l'ordine è già visibile e una spedizione potrebbe averne cambiato lo stato
+                try {
+                    slot.ordine.notificaOsservatori("Ordine " + slot.ordine.getIdOrdine() + " aggiornato a: " + Ordine.StatoOrdine.PAGATO);
+                } catch (RuntimeException e) {
+                    // Un osservatore difettoso non deve fermare la pipeline
+                }
+            }
+        }
+    }
+    
+    private void rilasciaLotto(long da, long a) {
+        for (long s = da; s <= a; s++) {
+            Slot slot = anello[(int) s & maschera];
+            slot.ordine = null;
+            slot.cliente = null;
         }
-        return ordiniInAttesa;
     }
 }
 
@@ -519,7 +2908,7 @@ class FacadeEcommerce {
         System.out.print("Password: ");
         String password = scanner.nextLine();
         
-        Utente utente = database.autenticaUtente(loginId, password);
+        Utente utente = accedi(loginId, password);
         if (utente != null) {
             System.out.println("Accesso effettuato con successo! Benvenuto " + utente.getNickname());
             gestisciSessioneUtente(utente);
@@ -536,11 +2925,7 @@ class FacadeEcommerce {
         System.out.print("Password: ");
         String password = scanner.nextLine();
         
-        String idUtente = database.generaIdUtente();
-        FabbricaClienti fabbricaClienti = new FabbricaClienti();
-        Utente nuovoUtente = fabbricaClienti.creaUtente(idUtente, email, nickname, password);
-        database.aggiungiUtente(nuovoUtente);
-        
+        registraCliente(email, nickname, password);
         System.out.println("Registrazione completata con successo!");
     }
     
@@ -583,6 +2968,25 @@ class FacadeEcommerce {
             case 6:
                 visualizzaInventario();
                 break;
+            case 7:
+                ricaricaTariffeSpedizione();
+                break;
+            case 8:
+                aggiungiPromozione();
+                break;
+            case 9:
+                visualizzaPromozioni();
+                break;
+            case 10:
+                salvaImmagineDatabase();
+                break;
+            case 11:
+                IndiceCoAcquisti.getIstanza().ricostruisci();
+                System.out.println("Raccomandazioni ricostruite dallo storico ordini!");
+                break;
+            case 12:
+                visualizzaReportVendite();
+                break;
             default:
                 System.out.println("Scelta non valida!");
         }
@@ -673,10 +3077,8 @@ class FacadeEcommerce {
     private void spedisciOrdine() {
         System.out.print("ID ordine da spedire: ");
         String idOrdine = scanner.nextLine();
-        Ordine ordine = database.getOrdine(idOrdine);
         
-        if (ordine != null && ordine.getStato() == Ordine.StatoOrdine.PAGATO) {
-            ordine.aggiornaStato(Ordine.StatoOrdine.SPEDITO);
+        if (spedisci(idOrdine)) {
             System.out.println("Ordine spedito con successo!");
         } else {
             System.out.println("Ordine non trovato o non valido per la spedizione!");
@@ -697,6 +3099,143 @@ class FacadeEcommerce {
         }
     }
     
+    private void ricaricaTariffeSpedizione() {
+        System.out.print("Percorso file tariffe: ");
+        String percorso = scanner.nextLine();
+        
+        try {
+            MotoreSpedizioni.getIstanza().ricarica(Paths.get(percorso));
+            System.out.println("Tariffe ricaricate con successo!");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Errore nel caricamento delle tariffe: " + e.getMessage());
+        }
+    }
+    
+    private void aggiungiPromozione() {
+        System.out.println("Tipo di promozione:");
+        System.out.println("1. Sconto su tipologia (* per tutto il catalogo)");
+        System.out.println("2. Compra X prendi Y");
+        System.out.println("3. Sconto a scaglioni sul totale");
+        int tipoPromozione = leggiIntero();
+        
+        System.out.print("Nome promozione: ");
+        String nome = scanner.nextLine();
+        System.out.print("Durata in giorni (0 = illimitata): ");
+        int giorni = leggiIntero();
+        long inizio = System.currentTimeMillis();
+        long fine = giorni > 0 ? inizio + giorni * 86_400_000L : Long.MAX_VALUE;
+        
+        Promozione promozione;
+        try {
+            switch (tipoPromozione) {
+                case 1:
+                    System.out.print("Tipologia: ");
+                    String tipo = scanner.nextLine();
+                    System.out.print("Percentuale sconto: ");
+                    promozione = new PromozioneCategoria(nome, tipo, leggiDecimale(), inizio, fine);
+                    break;
+                case 2:
+                    System.out.print("Tipologia: ");
+                    String tipoCompraPrendi = scanner.nextLine();
+                    System.out.print("Quantità da acquistare (X): ");
+                    int acquistati = leggiIntero();
+                    System.out.print("Quantità in omaggio: ");
+                    int omaggio = leggiIntero();
+                    promozione = new PromozioneCompraPrendi(nome, tipoCompraPrendi, acquistati, omaggio, inizio, fine);
+                    break;
+                case 3:
+                    System.out.print("Scaglioni (soglia:percentuale separati da virgola, es. 100:5,200:10): ");
+                    String[] scaglioni = scanner.nextLine().split(",");
+                    double[] soglie = new double[scaglioni.length];
+                    double[] percentuali = new double[scaglioni.length];
+                    for (int i = 0; i < scaglioni.length; i++) {
+                        String[] parti = scaglioni[i].trim().split(":");
+                        soglie[i] = Double.parseDouble(parti[0].trim());
+                        percentuali[i] = Double.parseDouble(parti[1].trim());
+                    }
+                    promozione = new PromozioneSoglia(nome, soglie, percentuali, inizio, fine);
+                    break;
+                default:
+                    System.out.println("Scelta non valida!");
+                    return;
+            }
+        } catch (RuntimeException e) {
+            System.out.println("Dati promozione non validi!");
+            return;
+        }
+        
+        MotorePromozioni.getIstanza().aggiungiPromozione(promozione);
+        System.out.println("Promozione aggiunta con successo!");
+    }
+    
+    private void visualizzaPromozioni() {
+        System.out.println("\n=== PROMOZIONI ===");
+        List<Promozione> promozioni = MotorePromozioni.getIstanza().getPromozioni();
+        long adesso = System.currentTimeMillis();
+        
+        if (promozioni.isEmpty()) {
+            System.out.println("Nessuna promozione.");
+        } else {
+            for (Promozione promozione : promozioni) {
+                System.out.println(promozione.getDescrizione() + (promozione.isAttiva(adesso) ? "" : " (non attiva)"));
+            }
+        }
+    }
+    
+    private void salvaImmagineDatabase() {
+        System.out.print("Percorso file immagine: ");
+        String percorso = scanner.nextLine();
+        
+        try {
+            database.salvaImmagine(Paths.get(percorso));
+            System.out.println("Immagine salvata con successo!");
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Errore nel salvataggio dell'immagine: " + e.getMessage());
+        }
+    }
+    
+    private void visualizzaReportVendite() {
+        long inizio = System.nanoTime();
+        ReportVendite report = ProiezioneOrdini.getIstanza().calcolaReport(ForkJoinPool.commonPool());
+        long durata = (System.nanoTime() - inizio) / 1_000_000;
+        
+        System.out.println("\n=== REPORT VENDITE ===");
+        if (report.getNumeroOrdini() == 0) {
+            System.out.println("Nessun ordine pagato.");
+            return;
+        }
+        System.out.println("Ordini: " + report.getNumeroOrdini() +
+                         " - Ricavi merce netti: €" + String.format("%.2f", report.getRicavi()) +
+                         " - Scontrino medio merce: €" + String.format("%.2f", report.getScontrinoMedio()) +
+                         " - Articoli per ordine: " + String.format("%.2f", report.getArticoliMedi()));
+        System.out.println("Sconti promozioni: €" + String.format("%.2f", report.getSconti()) +
+                         " (" + String.format("%.1f", report.getIncidenzaSconti()) + "% del lordo merce)");
+        System.out.println("Spese di spedizione: €" + String.format("%.2f", report.getSpeseSpedizione()) +
+                         " - Incassato totale: €" + String.format("%.2f", report.getIncassato()));
+        System.out.println("(ricavi merce netti = prezzo articoli meno promozioni, spedizione esclusa; base di tutte le ripartizioni)");
+        
+        System.out.println("-- Ricavi merce per giorno (fuso " + report.getZona() + ") --");
+        for (Map.Entry<LocalDate, Double> voce : report.getRicaviPerGiorno().entrySet()) {
+            System.out.println(voce.getKey() + " - €" + String.format("%.2f", voce.getValue()));
+        }
+        if (report.getOrdiniSenzaData() > 0) {
+            System.out.println("Ordini senza data (archivi precedenti), esclusi dal dettaglio per giorno: " + report.getOrdiniSenzaData());
+        }
+        System.out.println("-- Ricavi merce per tipologia --");
+        for (Map.Entry<String, Double> voce : report.getRicaviPerTipo().entrySet()) {
+            System.out.println(voce.getKey() + " - €" + String.format("%.2f", voce.getValue()));
+        }
+        System.out.println("-- Per metodo di pagamento --");
+        for (Map.Entry<String, double[]> voce : report.getPerPagamento().entrySet()) {
+            System.out.println(voce.getKey() + " - " + (long) voce.getValue()[0] + " ordini - €" + String.format("%.2f", voce.getValue()[1]));
+        }
+        System.out.println("-- Per metodo di spedizione --");
+        for (Map.Entry<String, double[]> voce : report.getPerSpedizione().entrySet()) {
+            System.out.println(voce.getKey() + " - " + (long) voce.getValue()[0] + " ordini - €" + String.format("%.2f", voce.getValue()[1]));
+        }
+        System.out.println("Report calcolato in " + durata + " ms");
+    }
+    
     private void visualizzaVestitiDisponibili() {
         System.out.println("\n=== VESTITI DISPONIBILI ===");
         List<ArticoloAbbigliamento> inventario = database.getInventario();
@@ -714,10 +3253,8 @@ class FacadeEcommerce {
     private void acquistaVestito(UtenteCliente cliente) {
         System.out.print("ID vestito da acquistare: ");
         String id = scanner.nextLine();
-        ArticoloAbbigliamento articolo = database.getArticoloAbbigliamento(id);
         
-        if (articolo != null) {
-            cliente.aggiungiAlCarrello(articolo);
+        if (aggiungiAlCarrello(cliente, id)) {
             System.out.println("Vestito aggiunto al carrello!");
         } else {
             System.out.println("Vestito non trovato!");
@@ -731,12 +3268,26 @@ class FacadeEcommerce {
         if (carrello.isEmpty()) {
             System.out.println("Carrello vuoto.");
         } else {
-            double totale = 0;
             for (ArticoloAbbigliamento articolo : carrello) {
                 System.out.println(articolo.getDescrizione() + " - €" + String.format("%.2f", articolo.getPrezzo()));
-                totale += articolo.getPrezzo();
             }
-            System.out.println("Totale: €" + String.format("%.2f", totale));
+            PrezzoCarrello prezzo = MotorePromozioni.getIstanza().calcolaPrezzo(carrello);
+            if (prezzo.getSconto() > 0) {
+                System.out.println("Sconto promozioni: -€" + String.format("%.2f", prezzo.getSconto()));
+            }
+            System.out.println("Totale: €" + String.format("%.2f", prezzo.getTotale()));
+            
+            List<String> consigli = IndiceCoAcquisti.getIstanza().consiglia(carrello, 3);
+            if (!consigli.isEmpty()) {
+                System.out.println("Spesso acquistati insieme:");
+                for (String id : consigli) {
+                    ArticoloAbbigliamento articolo = database.getArticoloAbbigliamento(id);
+                    if (articolo != null) {
+                        System.out.println("  " + articolo.getId() + " - " + articolo.getDescrizione() +
+                                         " - €" + String.format("%.2f", articolo.getPrezzo()));
+                    }
+                }
+            }
         }
     }
     
@@ -746,12 +3297,6 @@ class FacadeEcommerce {
             return;
         }
         
-        // Calcolo totale
-        double totale = 0;
-        for (ArticoloAbbigliamento articolo : cliente.getCarrello()) {
-            totale += articolo.getPrezzo();
-        }
-        
         // Scelta metodo di pagamento
         System.out.println("Scegli metodo di pagamento:");
         System.out.println("1. Carta di credito");
@@ -767,44 +3312,29 @@ class FacadeEcommerce {
             strategiaPagamento = new PagamentoPayPal(cliente.getEmail());
         }
         
-        // Scelta metodo di spedizione
+        // Scelta metodo di spedizione con preventivo di tutti i corrieri
+        double totaleCarrello = MotorePromozioni.getIstanza().calcolaPrezzo(cliente.getCarrello()).getTotale();
+        MotoreSpedizioni motoreSpedizioni = MotoreSpedizioni.getIstanza();
+        TabellaTariffe tariffe = motoreSpedizioni.getTabella();
+        double[] preventivi = tariffe.quotaTutti(totaleCarrello);
+        
         System.out.println("Scegli metodo di spedizione:");
-        System.out.println("1. Spedizione standard");
-        System.out.println("2. Spedizione express");
+        for (int c = 0; c < preventivi.length; c++) {
+            System.out.println((c + 1) + ". " + tariffe.getCorriere(c) + " - €" + String.format("%.2f", preventivi[c]) +
+                             " (" + tariffe.getGiorniConsegna(c) + " giorni)");
+        }
         int sceltaSpedizione = leggiIntero();
-        
-        StrategiaSpedizione strategiaSpedizione;
-        if (sceltaSpedizione == 1) {
-            strategiaSpedizione = new SpedizioneStandard();
-        } else {
-            strategiaSpedizione = new SpedizioneExpress();
+        if (sceltaSpedizione < 1 || sceltaSpedizione > preventivi.length) {
+            sceltaSpedizione = preventivi.length;
         }
         
-        double costoSpedizione = strategiaSpedizione.calcolaCostoSpedizione(totale);
-        double totaleFinale = totale + costoSpedizione;
-        
-        // Creazione ordine
-        String idOrdine = database.generaIdOrdine();
-        Ordine ordine = new Ordine(idOrdine, cliente.getId());
-        ordine.setArticoli(cliente.getCarrello());
-        ordine.setTotale(totaleFinale);
-        ordine.setStrategiaPagamento(strategiaPagamento);
-        ordine.setStrategiaSpedizione(strategiaSpedizione);
-        
-        // Registrazione per notifiche
-        ServizioNotifiche servizioNotifiche = new ServizioNotifiche(cliente.getEmail());
-        ordine.registraOsservatore(servizioNotifiche);
+        StrategiaSpedizione strategiaSpedizione = new SpedizioneTariffata(tariffe, sceltaSpedizione - 1);
         
-        // Elaborazione pagamento
-        if (strategiaPagamento.elaboraPagamento(totaleFinale)) {
-            ordine.aggiornaStato(Ordine.StatoOrdine.PAGATO);
-            database.aggiungiOrdine(ordine);
-            cliente.aggiungiOrdine(ordine);
-            cliente.svuotaCarrello();
-            
+        Ordine ordine = completaOrdine(cliente, strategiaPagamento, strategiaSpedizione);
+        if (ordine.getStato() == Ordine.StatoOrdine.PAGATO) {
             System.out.println("Ordine completato con successo!");
-            System.out.println("ID Ordine: " + idOrdine);
-            System.out.println("Totale pagato: €" + String.format("%.2f", totaleFinale));
+            System.out.println("ID Ordine: " + ordine.getIdOrdine());
+            System.out.println("Totale pagato: €" + String.format("%.2f", ordine.getTotale()));
         } else {
             System.out.println("Errore nel pagamento!");
         }
@@ -825,6 +3355,70 @@ class FacadeEcommerce {
         }
     }
     
+    // ---- Operazioni senza console, usate anche dal simulatore di carico ----
+    
+    public Utente registraCliente(String email, String nickname, String password) {
+        String idUtente = database.generaIdUtente();
+        FabbricaClienti fabbricaClienti = new FabbricaClienti();
+        Utente nuovoUtente = fabbricaClienti.creaUtente(idUtente, email, nickname, password);
+        database.aggiungiUtente(nuovoUtente);
+        return nuovoUtente;
+    }
+    
+    public Utente accedi(String loginId, String password) {
+        return database.autenticaUtente(loginId, password);
+    }
+    
+    public List<ArticoloAbbigliamento> getVestitiDisponibili() {
+        return database.getInventario();
+    }
+    
+    public boolean aggiungiAlCarrello(UtenteCliente cliente, String idArticolo) {
+        ArticoloAbbigliamento articolo = database.getArticoloAbbigliamento(idArticolo);
+        if (articolo == null) {
+            return false;
+        }
+        cliente.aggiungiAlCarrello(articolo);
+        return true;
+    }
+    
+    // Restituisce l'ordine elaborato: lo stato PAGATO indica il successo
+    public Ordine completaOrdine(UtenteCliente cliente, StrategiaPagamento strategiaPagamento,
+                                 StrategiaSpedizione strategiaSpedizione) {
+        // Creazione ordine (ID e totale vengono assegnati dalla pipeline)
+        Ordine ordine = new Ordine(null, cliente.getId());
+        ordine.setArticoli(cliente.getCarrello());
+        ordine.setStrategiaPagamento(strategiaPagamento);
+        ordine.setStrategiaSpedizione(strategiaSpedizione);
+        
+        // Registrazione per notifiche
+        ServizioNotifiche servizioNotifiche = new ServizioNotifiche(cliente.getEmail());
+        ordine.registraOsservatore(servizioNotifiche);
+        
+        // Elaborazione pagamento tramite pipeline ordini
+        PipelineOrdini pipelineOrdini = database.getPipelineOrdini();
+        pipelineOrdini.attendi(pipelineOrdini.pubblica(ordine, cliente));
+        return ordine;
+    }
+    
+    public boolean spedisci(String idOrdine) {
+        Ordine ordine = database.getOrdine(idOrdine);
+        if (ordine != null && ordine.getStato() == Ordine.StatoOrdine.PAGATO) {
+            ordine.aggiornaStato(Ordine.StatoOrdine.SPEDITO);
+            return true;
+        }
+        return false;
+    }
+    
+    // Ondata di spedizioni: spedisce fino a massimo ordini pagati
+    public int spedisciOrdiniPagati(int massimo) {
+        List<Ordine> daSpedire = database.getOrdiniInAttesa(massimo);
+        for (Ordine ordine : daSpedire) {
+            ordine.aggiornaStato(Ordine.StatoOrdine.SPEDITO);
+        }
+        return daSpedire.size();
+    }
+    
     private int leggiIntero() {
         try {
             return Integer.parseInt(scanner.nextLine());
@@ -842,9 +3436,520 @@ class FacadeEcommerce {
     }
 }
 
+// ================ SIMULATORE CARICO ================
+// Una riga della traccia: TIPO;campo1;campo2;...
+class EventoCarico {
+    enum Tipo { ARTICOLO, REGISTRAZIONE, ACCESSO, NAVIGA, ACQUISTA, CHECKOUT, SPEDIZIONE }
+    
+    private final Tipo tipo;
+    private final String[] campi;
+    
+    public EventoCarico(Tipo tipo, String... campi) {
+        this.tipo = tipo;
+        this.campi = campi;
+    }
+    
+    public static EventoCarico daRiga(String riga) {
+        String[] parti = riga.split(";", -1);
+        return new EventoCarico(Tipo.valueOf(parti[0]), Arrays.copyOfRange(parti, 1, parti.length));
+    }
+    
+    public String comeRiga() {
+        return tipo + (campi.length > 0 ? ";" + String.join(";", campi) : "");
+    }
+    
+    public Tipo getTipo() { return tipo; }
+    public String getCampo(int indice) { return campi[indice]; }
+}
+
+// Generatore deterministico: a parità di seme produce la stessa traccia.
+// Modella registrazioni, accessi, navigazione, acquisti, checkout con i vari
+// metodi di pagamento e corrieri, e ondate di spedizione dell'amministratore.
+class GeneratoreCarico {
+    private static final String[] TIPI = {"maglia", "jeans", "giacca", "scarpe", "camicia", "gonna", "felpa"};
+    
+    private final long seme;
+    private final Random casuale;
+    private final List<String> articoli = new ArrayList<>();
+    private final List<String> clienti = new ArrayList<>();
+    private final List<String> sessioni = new ArrayList<>();
+    private final Map<String, Integer> articoliNelCarrello = new HashMap<>();
+    
+    public GeneratoreCarico(long seme) {
+        this.seme = seme;
+        this.casuale = new Random(seme);
+    }
+    
+    public List<EventoCarico> genera(int numeroEventi, int numeroArticoli) {
+        List<EventoCarico> eventi = new ArrayList<>(numeroArticoli + numeroEventi);
+        for (int i = 0; i < numeroArticoli; i++) {
+            String id = "sim" + i;
+            double prezzo = 5 + casuale.nextInt(14_500) / 100.0;
+            eventi.add(new EventoCarico(EventoCarico.Tipo.ARTICOLO, id, "Articolo " + i, TIPI[casuale.nextInt(TIPI.length)], String.valueOf(prezzo)));
+            articoli.add(id);
+        }
+        
+        TabellaTariffe tariffe = MotoreSpedizioni.getIstanza().getTabella();
+        for (int i = 0; i < numeroEventi; i++) {
+            int scelta = casuale.nextInt(100);
+            if (clienti.isEmpty() || scelta < 5) {
+                String nickname = "cliente" + clienti.size();
+                clienti.add(nickname);
+                eventi.add(new EventoCarico(EventoCarico.Tipo.REGISTRAZIONE, nickname + "@sim.it", nickname, "pw" + nickname));
+            } else if (sessioni.isEmpty() || scelta < 12) {
+                String nickname = clienti.get(casuale.nextInt(clienti.size()));
+                if (!sessioni.contains(nickname)) {
+                    sessioni.add(nickname);
+                }
+                eventi.add(new EventoCarico(EventoCarico.Tipo.ACCESSO, nickname, "pw" + nickname));
+            } else if (scelta < 55) {
+                eventi.add(new EventoCarico(EventoCarico.Tipo.NAVIGA, sessioneCasuale()));
+            } else if (scelta < 97) {
+                String nickname = sessioneCasuale();
+                int nelCarrello = articoliNelCarrello.getOrDefault(nickname, 0);
+                if (scelta < 85 || nelCarrello == 0) {
+                    // Popolarità sbilanciata: pochi articoli ricevono la maggior parte degli acquisti
+                    double r = casuale.nextDouble();
+                    String articolo = articoli.get((int) (articoli.size() * r * r));
+                    articoliNelCarrello.put(nickname, nelCarrello + 1);
+                    eventi.add(new EventoCarico(EventoCarico.Tipo.ACQUISTA, nickname, articolo));
+                } else {
+                    String pagamento = casuale.nextInt(100) < 60 ? "CARTA" : "PAYPAL";
+                    String corriere = tariffe.getCorriere(casuale.nextInt(tariffe.getNumeroCorrieri()));
+                    articoliNelCarrello.put(nickname, 0);
+                    eventi.add(new EventoCarico(EventoCarico.Tipo.CHECKOUT, nickname, pagamento, corriere));
+                }
+            } else {
+                eventi.add(new EventoCarico(EventoCarico.Tipo.SPEDIZIONE, String.valueOf(10 + casuale.nextInt(41))));
+            }
+        }
+        return eventi;
+    }
+    
+    private String sessioneCasuale() {
+        return sessioni.get(casuale.nextInt(sessioni.size()));
+    }
+    
+    public void scriviTraccia(Path file, List<EventoCarico> eventi) throws IOException {
+        List<String> righe = new ArrayList<>(eventi.size() + 1);
+        righe.add("# traccia seme=" + seme + " eventi=" + eventi.size());
+        for (EventoCarico evento : eventi) {
+            righe.add(evento.comeRiga());
+        }
+        Files.write(file, righe, StandardCharsets.UTF_8);
+    }
+}
+
+// Riproduce una traccia contro FacadeEcommerce a ritmo fisso (o al massimo)
+// e misura throughput e percentili di latenza per tipo di evento.
+class RiproduttoreCarico {
+    private final FacadeEcommerce facade;
+    private final Map<String, UtenteCliente> sessioni = new HashMap<>();
+    
+    public RiproduttoreCarico(FacadeEcommerce facade) {
+        this.facade = facade;
+    }
+    
+    public static List<EventoCarico> leggiTraccia(Path file) throws IOException {
+        List<EventoCarico> eventi = new ArrayList<>();
+        for (String riga : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!riga.isEmpty() && !riga.startsWith("#")) {
+                eventi.add(EventoCarico.daRiga(riga));
+            }
+        }
+        return eventi;
+    }
+    
+    // eventiAlSecondo <= 0 significa "alla massima velocità"
+    public void riproduci(List<EventoCarico> eventi, double eventiAlSecondo, PrintStream report) {
+        // Il catalogo iniziale è preparato in un solo lotto e non viene misurato
+        int primo = 0;
+        while (primo < eventi.size() && eventi.get(primo).getTipo() == EventoCarico.Tipo.ARTICOLO) {
+            primo++;
+        }
+        List<EventoCarico> preparazione = eventi.subList(0, primo);
+        DatabaseEcommerce.getIstanza().modificaCatalogo(modifica -> {
+            for (EventoCarico evento : preparazione) {
+                modifica.aggiungi(creaArticolo(evento));
+            }
+        });
+        
+        int numero = eventi.size() - primo;
+        long[] latenze = new long[numero];
+        boolean[] esiti = new boolean[numero];
+        long intervallo = eventiAlSecondo > 0 ? (long) (1e9 / eventiAlSecondo) : 0;
+        
+        // Le stampe della console (pagamenti, notifiche) non fanno parte della misura
+        PrintStream uscitaOriginale = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long inizio = System.nanoTime();
+        try {
+            for (int i = 0; i < numero; i++) {
+                long previsto = inizio + i * intervallo;
+                long adesso = System.nanoTime();
+                while (adesso < previsto) {
+                    // parkNanos è troppo impreciso sotto i 100 us: nell'ultimo tratto si attende attivamente
+                    if (previsto - adesso > 100_000) {
+                        LockSupport.parkNanos(previsto - adesso - 50_000);
+                    } else {
+                        Thread.onSpinWait();
+                    }
+                    adesso = System.nanoTime();
+                }
+                // Con ritmo fisso la latenza parte dall'istante previsto, inclusa l'eventuale coda
+                long partenza = intervallo > 0 ? previsto : adesso;
+                esiti[i] = esegui(eventi.get(primo + i));
+                latenze[i] = System.nanoTime() - partenza;
+            }
+        } finally {
+            System.setOut(uscitaOriginale);
+        }
+        long durata = System.nanoTime() - inizio;
+        
+        report.println(String.format("Eventi: %d in %.2f s - %.0f eventi/s", numero, durata / 1e9, numero / (durata / 1e9)));
+        report.println(String.format("%-14s %8s %8s %10s %10s %10s %10s %10s", "tipo", "eventi", "falliti", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (EventoCarico.Tipo tipo : EventoCarico.Tipo.values()) {
+            stampaPercentili(report, tipo.name(), tipo, eventi, primo, latenze, esiti);
+        }
+        stampaPercentili(report, "TOTALE", null, eventi, primo, latenze, esiti);
+    }
+    
+    private void stampaPercentili(PrintStream report, String etichetta, EventoCarico.Tipo tipo, List<EventoCarico> eventi,
+                                  int primo, long[] latenze, boolean[] esiti) {
+        long[] selezionate = new long[latenze.length];
+        int numero = 0;
+        int falliti = 0;
+        for (int i = 0; i < latenze.length; i++) {
+            if (tipo == null || eventi.get(primo + i).getTipo() == tipo) {
+                selezionate[numero++] = latenze[i];
+                if (!esiti[i]) {
+                    falliti++;
+                }
+            }
+        }
+        if (numero == 0) {
+            return;
+        }
+        Arrays.sort(selezionate, 0, numero);
+        report.println(String.format("%-14s %8d %8d %10.1f %10.1f %10.1f %10.1f %10.1f", etichetta, numero, falliti,
+                                     percentile(selezionate, numero, 0.50), percentile(selezionate, numero, 0.90),
+                                     percentile(selezionate, numero, 0.99), percentile(selezionate, numero, 0.999),
+                                     selezionate[numero - 1] / 1e3));
+    }
+    
+    private static double percentile(long[] ordinate, int numero, double quantile) {
+        int indice = (int) Math.ceil(quantile * numero) - 1;
+        return ordinate[Math.max(0, Math.min(numero - 1, indice))] / 1e3;
+    }
+    
+    private static ArticoloAbbigliamento creaArticolo(EventoCarico evento) {
+        return new ArticoloAbbigliamentoBase(evento.getCampo(0), evento.getCampo(1), evento.getCampo(2),
+                                             Double.parseDouble(evento.getCampo(3)));
+    }
+    
+    private boolean esegui(EventoCarico evento) {
+        try {
+            switch (evento.getTipo()) {
+                case ARTICOLO:
+                    DatabaseEcommerce.getIstanza().aggiungiArticoloAbbigliamento(creaArticolo(evento));
+                    return true;
+                case REGISTRAZIONE:
+                    facade.registraCliente(evento.getCampo(0), evento.getCampo(1), evento.getCampo(2));
+                    return true;
+                case ACCESSO: {
+                    Utente utente = facade.accedi(evento.getCampo(0), evento.getCampo(1));
+                    if (utente instanceof UtenteCliente) {
+                        sessioni.put(evento.getCampo(0), (UtenteCliente) utente);
+                        return true;
+                    }
+                    return false;
+                }
+                case NAVIGA: {
+                    if (!sessioni.containsKey(evento.getCampo(0))) {
+                        return false;
+                    }
+                    // Simula la visualizzazione: ogni articolo viene letto e prezzato
+                    double totale = 0;
+                    for (ArticoloAbbigliamento articolo : facade.getVestitiDisponibili()) {
+                        totale += articolo.getPrezzo();
+                    }
+                    return totale >= 0;
+                }
+                case ACQUISTA: {
+                    UtenteCliente cliente = sessioni.get(evento.getCampo(0));
+                    return cliente != null && facade.aggiungiAlCarrello(cliente, evento.getCampo(1));
+                }
+                case CHECKOUT: {
+                    UtenteCliente cliente = sessioni.get(evento.getCampo(0));
+                    if (cliente == null || cliente.getCarrello().isEmpty()) {
+                        return false;
+                    }
+                    StrategiaPagamento pagamento = evento.getCampo(1).equals("CARTA")
+                        ? new PagamentoCartaCredito("4111111111111111")
+                        : new PagamentoPayPal(cliente.getEmail());
+                    StrategiaSpedizione spedizione = MotoreSpedizioni.getIstanza().creaStrategia(evento.getCampo(2));
+                    return facade.completaOrdine(cliente, pagamento, spedizione).getStato() == Ordine.StatoOrdine.PAGATO;
+                }
+                case SPEDIZIONE:
+                    facade.spedisciOrdiniPagati(Integer.parseInt(evento.getCampo(0)));
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+}
+
+// Uso:
+//   java SimulatoreCarico genera <file> <seme> <eventi> [articoli]
+//   java SimulatoreCarico riproduci <file> [eventiAlSecondo]
+class SimulatoreCarico {
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 4 && args[0].equals("genera")) {
+            GeneratoreCarico generatore = new GeneratoreCarico(Long.parseLong(args[2]));
+            int articoli = args.length > 4 ? Integer.parseInt(args[4]) : 500;
+            List<EventoCarico> eventi = generatore.genera(Integer.parseInt(args[3]), articoli);
+            generatore.scriviTraccia(Paths.get(args[1]), eventi);
+            System.out.println("Traccia generata: " + eventi.size() + " eventi in " + args[1]);
+        } else if (args.length >= 2 && args[0].equals("riproduci")) {
+            double eventiAlSecondo = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+            List<EventoCarico> eventi = RiproduttoreCarico.leggiTraccia(Paths.get(args[1]));
+            new RiproduttoreCarico(new FacadeEcommerce()).riproduci(eventi, eventiAlSecondo, System.out);
+        } else {
+            System.out.println("Uso: java SimulatoreCarico genera <file> <seme> <eventi> [articoli]");
+            System.out.println("     java SimulatoreCarico riproduci <file> [eventiAlSecondo]");
+        }
+    }
+}
+
+// ================ BENCHMARK CODEC ================
+// Confronta dimensione e throughput del codec binario con la serializzazione
+// Java e con JSON. Le classi di dominio non sono Serializable: per Java e JSON
+// si usa un grafo equivalente di mappe e liste.
+// Uso: java BenchmarkCodec [numeroOrdini]
+class BenchmarkCodec {
+    public static void main(String[] args) throws Exception {
+        int numeroOrdini = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        List<Ordine> ordini = creaOrdini(numeroOrdini);
+        List<Map<String, Object>> mappe = new ArrayList<>();
+        for (Ordine ordine : ordini) {
+            mappe.add(comeMappa(ordine));
+        }
+        
+        System.out.println("Ordini: " + numeroOrdini);
+        for (int giro = 0; giro < 5; giro++) {
+            boolean riscaldamento = giro < 4;
+            
+            long inizio = System.nanoTime();
+            ScrittoreBinario scrittore = new ScrittoreBinario(1 << 20);
+            for (Ordine ordine : ordini) {
+                CodecBinario.codificaOrdine(scrittore, ordine);
+            }
+            ByteBuffer binario = scrittore.getBuffer();
+            long codificaBinario = System.nanoTime() - inizio;
+            inizio = System.nanoTime();
+            LettoreBinario lettore = new LettoreBinario(binario.duplicate());
+            int decodificati = 0;
+            while (lettore.haAltriDati()) {
+                CodecBinario.decodificaOrdine(lettore);
+                decodificati++;
+            }
+            long decodificaBinario = System.nanoTime() - inizio;
+            
+            inizio = System.nanoTime();
+            ByteArrayOutputStream bytesJava = new ByteArrayOutputStream();
+            try (ObjectOutputStream uscita = new ObjectOutputStream(bytesJava)) {
+                uscita.writeObject(mappe);
+            }
+            long codificaJava = System.nanoTime() - inizio;
+            inizio = System.nanoTime();
+            try (ObjectInputStream ingresso = new ObjectInputStream(new ByteArrayInputStream(bytesJava.toByteArray()))) {
+                ingresso.readObject();
+            }
+            long decodificaJava = System.nanoTime() - inizio;
+            
+            inizio = System.nanoTime();
+            StringBuilder json = new StringBuilder();
+            scriviJson(json, mappe);
+            byte[] bytesJson = json.toString().getBytes(StandardCharsets.UTF_8);
+            long codificaJson = System.nanoTime() - inizio;
+            inizio = System.nanoTime();
+            new LettoreJson(new String(bytesJson, StandardCharsets.UTF_8)).leggiValore();
+            long decodificaJson = System.nanoTime() - inizio;
+            
+            if (!riscaldamento) {
+                stampa("Binario", binario.remaining(), codificaBinario, decodificaBinario, decodificati);
+                stampa("Java", bytesJava.size(), codificaJava, decodificaJava, numeroOrdini);
+                stampa("JSON", bytesJson.length, codificaJson, decodificaJson, numeroOrdini);
+            }
+        }
+    }
+    
+    private static void stampa(String formato, int dimensione, long codifica, long decodifica, int ordini) {
+        System.out.println(String.format("%-8s %10d byte  %8.1f byte/ordine  codifica %10.0f ordini/s  decodifica %10.0f ordini/s",
+                                         formato, dimensione, (double) dimensione / ordini,
+                                         ordini / (codifica / 1e9), ordini / (decodifica / 1e9)));
+    }
+    
+    private static List<Ordine> creaOrdini(int numero) {
+        String[] tipi = {"maglia", "jeans", "giacca", "scarpe", "camicia"};
+        Random casuale = new Random(42);
+        List<Ordine> ordini = new ArrayList<>(numero);
+        for (int i = 0; i < numero; i++) {
+            Ordine ordine = new Ordine("ordine" + i, "utente" + casuale.nextInt(1000));
+            List<ArticoloAbbigliamento> articoli = new ArrayList<>();
+            int numeroArticoli = 1 + casuale.nextInt(4);
+            for (int a = 0; a < numeroArticoli; a++) {
+                int sku = casuale.nextInt(500);
+                ArticoloAbbigliamento articolo = new ArticoloAbbigliamentoBase("v" + sku, "Articolo " + sku, tipi[sku % tipi.length], 10 + sku % 90);
+                if (casuale.nextInt(4) == 0) {
+                    articolo = new DecoratoreSconto(articolo, 20);
+                }
+                articoli.add(articolo);
+            }
+            ordine.setArticoli(articoli);
+            ordine.setTotale(100 * casuale.nextDouble());
+            ordine.setStato(Ordine.StatoOrdine.PAGATO);
+            ordine.setStrategiaPagamento(casuale.nextBoolean() ? new PagamentoCartaCredito("4111111111111111") : new PagamentoPayPal("cliente" + i + "@mail.it"));
+            ordine.setStrategiaSpedizione(casuale.nextBoolean() ? new SpedizioneStandard() : new SpedizioneExpress());
+            ordine.registraOsservatore(new ServizioNotifiche("cliente" + i + "@mail.it"));
+            ordini.add(ordine);
+        }
+        return ordini;
+    }
+    
+    private static Map<String, Object> comeMappa(Ordine ordine) {
+        Map<String, Object> mappa = new LinkedHashMap<>();
+        mappa.put("idOrdine", ordine.getIdOrdine());
+        mappa.put("idCliente", ordine.getIdCliente());
+        mappa.put("stato", ordine.getStato().name());
+        mappa.put("totale", ordine.getTotale());
+        mappa.put("pagamento", ordine.getStrategiaPagamento().getMetodoPagamento());
+        mappa.put("spedizione", ordine.getStrategiaSpedizione().getMetodoSpedizione());
+        List<Object> articoli = new ArrayList<>();
+        for (ArticoloAbbigliamento articolo : ordine.getArticoli()) {
+            Map<String, Object> voce = new LinkedHashMap<>();
+            voce.put("id", articolo.getId());
+            voce.put("nome", articolo.getNome());
+            voce.put("tipo", articolo.getTipo());
+            voce.put("prezzo", articolo.getPrezzoBase());
+            voce.put("sconto", articolo instanceof DecoratoreSconto ? ((DecoratoreSconto) articolo).getPercentualeSconto() : 0.0);
+            articoli.add(voce);
+        }
+        mappa.put("articoli", articoli);
+        List<Object> osservatori = new ArrayList<>();
+        for (Osservatore osservatore : ordine.getOsservatori()) {
+            osservatori.add(((ServizioNotifiche) osservatore).getEmailUtente());
+        }
+        mappa.put("osservatori", osservatori);
+        return mappa;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void scriviJson(StringBuilder json, Object valore) {
+        if (valore instanceof Map) {
+            json.append('{');
+            boolean primo = true;
+            for (Map.Entry<String, Object> voce : ((Map<String, Object>) valore).entrySet()) {
+                if (!primo) {
+                    json.append(',');
+                }
+                primo = false;
+                scriviJson(json, voce.getKey());
+                json.append(':');
+                scriviJson(json, voce.getValue());
+            }
+            json.append('}');
+        } else if (valore instanceof List) {
+            json.append('[');
+            boolean primo = true;
+            for (Object elemento : (List<Object>) valore) {
+                if (!primo) {
+                    json.append(',');
+                }
+                primo = false;
+                scriviJson(json, elemento);
+            }
+            json.append(']');
+        } else if (valore instanceof String) {
+            // I dati del benchmark non contengono caratteri da escapare
+            json.append('"').append((String) valore).append('"');
+        } else {
+            json.append(valore);
+        }
+    }
+    
+    // Parser JSON minimale, sufficiente per i documenti prodotti da scriviJson
+    private static class LettoreJson {
+        private final String testo;
+        private int posizione;
+        
+        LettoreJson(String testo) {
+            this.testo = testo;
+        }
+        
+        Object leggiValore() {
+            char carattere = testo.charAt(posizione);
+            if (carattere == '{') {
+                Map<String, Object> mappa = new LinkedHashMap<>();
+                posizione++;
+                while (testo.charAt(posizione) != '}') {
+                    String chiave = (String) leggiValore();
+                    posizione++;
+                    mappa.put(chiave, leggiValore());
+                    if (testo.charAt(posizione) == ',') {
+                        posizione++;
+                    }
+                }
+                posizione++;
+                return mappa;
+            } else if (carattere == '[') {
+                List<Object> lista = new ArrayList<>();
+                posizione++;
+                while (testo.charAt(posizione) != ']') {
+                    lista.add(leggiValore());
+                    if (testo.charAt(posizione) == ',') {
+                        posizione++;
+                    }
+                }
+                posizione++;
+                return lista;
+            } else if (carattere == '"') {
+                int fine = testo.indexOf('"', posizione + 1);
+                String valore = testo.substring(posizione + 1, fine);
+                posizione = fine + 1;
+                return valore;
+            } else {
+                int inizio = posizione;
+                while (posizione < testo.length() && ",}]".indexOf(testo.charAt(posizione)) < 0) {
+                    posizione++;
+                }
+                return Double.parseDouble(testo.substring(inizio, posizione));
+            }
+        }
+    }
+}
+
 // ================ CLASSE PRINCIPALE ================
 public class EcommerceSystem {
     public static void main(String[] args) {
+        // Avvio da immagine: java EcommerceSystem --immagine <file>
+        if (args.length == 2 && args[0].equals("--immagine")) {
+            DatabaseEcommerce database = DatabaseEcommerce.getIstanza();
+            try {
+                database.caricaImmagine(Paths.get(args[1]));
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Errore nel caricamento dell'immagine: " + e.getMessage());
+                return;
+            }
+            for (Map.Entry<String, Long> fase : database.getTempiAvvio().entrySet()) {
+                System.out.println("Avvio - " + fase.getKey() + ": " + fase.getValue() + " ms");
+            }
+            System.out.println("Nodo pronto.");
+        }
+        
         FacadeEcommerce facade = new FacadeEcommerce();
         facade.avviaApplicazione();
     }